@@ -1,10 +1,13 @@
+import persistence.Persistence;
 import seeders.Seeder;
 import view.ConsoleUi;
 
 public class Main {
     public static void main(String[] args) {
-        // Seed the database with initial data
-        Seeder.run();
+        // Restore the ledger from the journal, or seed a fresh one
+        if (!Persistence.start()) {
+            Seeder.run();
+        }
 
         // Start the console UI
         ConsoleUi ui = new ConsoleUi();
@@ -62,8 +62,7 @@ public final class AccountController {
         AccountType selectedType = accountTypes[choice - 1];
 
         // Check if customer already has this type of account
-        boolean hasAccountType = c.getAccounts().stream()
-                .anyMatch(account -> account.getAccountType() == selectedType);
+        boolean hasAccountType = accountRepository.hasAccountType(c.getId(), selectedType);
 
         if (hasAccountType) {
             Console.error("You already have a " + selectedType + " account.");
@@ -185,11 +185,12 @@ public final class AdminController {
                 break;
             case "3":
                 String newEmail = Console.ask("Enter new email: ");
-                if (customerRepository.findByEmail(newEmail).isPresent()) {
-                    Console.error("Email already exists!");
-                } else {
-                    customer.setEmail(newEmail);
+                if (newEmail.isEmpty()) {
+                    Console.error("Email cannot be empty!");
+                } else if (customerRepository.updateEmail(customer, newEmail)) {
                     Console.success("Email updated successfully!");
+                } else {
+                    Console.error("Email already exists!");
                 }
                 break;
             case "4":
@@ -304,8 +305,7 @@ public final class AdminController {
                 AccountType selectedType = accountTypes[typeIndex];
 
                 // Check if customer already has this type of account
-                boolean hasAccountType = customer.getAccounts().stream()
-                        .anyMatch(account -> account.getAccountType() == selectedType);
+                boolean hasAccountType = accountRepository.hasAccountType(customer.getId(), selectedType);
 
                 if (hasAccountType) {
                     Console.error("Customer already has a " + selectedType + " account.");
@@ -354,7 +354,6 @@ public final class AdminController {
                     Account accountToDelete = accounts.get(index);
                     if (Console.confirm("Are you sure you want to delete this account?")) {
                         accountRepository.delete(accountToDelete);
-                        customer.getAccounts().remove(accountToDelete);
                         Console.success("Account deleted successfully!");
                     }
                 } else {
@@ -500,7 +499,8 @@ public final class AdminController {
     }
 
     private void filterAndDisplaySystemTransactions(ArrayList<Transaction> allTransactions) {
-        ArrayList<Transaction> filteredTransactions = filterService.filterTransactions(allTransactions);
+        ArrayList<Transaction> filteredTransactions = filterService.filterTransactions(allTransactions,
+                transactionRepository::findByDateRange);
         if (filteredTransactions.isEmpty()) {
             Console.warning("No transactions match the selected filters.");
             return;
@@ -607,7 +607,8 @@ public final class AdminController {
     }
 
     private void filterAndDisplayCustomerTransactions(ArrayList<Transaction> customerTransactions, Customer customer) {
-        ArrayList<Transaction> filteredTransactions = filterService.filterTransactions(customerTransactions);
+        ArrayList<Transaction> filteredTransactions = filterService.filterTransactions(customerTransactions,
+                (from, to) -> transactionRepository.findByDateRange(customer.getAccounts(), from, to));
         if (filteredTransactions.isEmpty()) {
             Console.warning("No transactions match the selected filters.");
             return;
@@ -111,13 +111,12 @@ public class AuthController {
                     return;
                 }
 
-                // Check if email already exists
-                if (customerRepository.findByEmail(email).isPresent()) {
+                // Check if email already exists and re-key the email index
+                if (!customerRepository.updateEmail(u, email)) {
                     Console.error("This email is already registered. Please use a different one.");
                     return;
                 }
 
-                u.setEmail(email);
                 Console.success("Your email has been updated successfully.");
                 break;
             case "firstname":
@@ -11,15 +11,18 @@ import models.TransactionType;
 import models.UserType;
 import repositories.AccountRepository;
 import repositories.CustomerRepository;
+import repositories.TransactionRepository;
 import services.AuthInterface;
 import services.FilterService;
 import services.StatisticsService;
 import utils.Console;
+import utils.Money;
 
 public final class CustomerController {
     private AuthInterface auth;
     private CustomerRepository customerRepository;
     private AccountRepository accountRepository;
+    private TransactionRepository transactionRepository;
     private TransactionController transactionController;
     private FilterService filterService;
     private StatisticsService statisticsService;
@@ -28,6 +31,7 @@ public final class CustomerController {
         this.auth = auth;
         this.customerRepository = CustomerRepository.getInstance();
         this.accountRepository = AccountRepository.getInstance();
+        this.transactionRepository = TransactionRepository.getInstance();
         this.transactionController = new TransactionController();
         this.filterService = FilterService.getInstance();
         this.statisticsService = StatisticsService.getInstance();
@@ -53,7 +57,10 @@ public final class CustomerController {
         }
 
         Customer newCustomer = new Customer(firstName, lastName, email, password, userType);
-        customerRepository.save(newCustomer);
+        if (!customerRepository.saveIfEmailAbsent(newCustomer)) {
+            Console.error("Email already exists!");
+            return;
+        }
         Console.success("Customer created successfully!");
     }
 
@@ -128,10 +135,10 @@ public final class CustomerController {
         Console.info("Number of Bank Accounts: " + customer.getAccounts().size());
 
         // Calculate total balance across all accounts
-        double totalBalance = customer.getAccounts().stream()
-                .mapToDouble(Account::getBalance)
-                .sum();
-        Console.info("Total Balance Across All Accounts: $" + String.format("%.2f", totalBalance));
+        long totalBalance = customer.getAccounts().stream()
+                .mapToLong(Account::getBalanceMinorUnits)
+                .reduce(0, Money::add);
+        Console.info("Total Balance Across All Accounts: $" + Money.format(totalBalance));
 
         // Show account types owned
         if (!customer.getAccounts().isEmpty()) {
@@ -154,28 +161,28 @@ public final class CustomerController {
         Console.line();
         Console.success("=== My Accounts Summary ===");
 
-        double grandTotal = 0;
+        long grandTotal = 0;
         for (int i = 0; i < accounts.size(); i++) {
             Account account = accounts.get(i);
-            double balance = account.getBalance();
-            grandTotal += balance;
+            long balance = account.getBalanceMinorUnits();
+            grandTotal = Money.add(grandTotal, balance);
 
             Console.info((i + 1) + ") " + account.getAccountType());
             Console.info("   Account ID: " + account.getId());
-            Console.info("   Current Balance: $" + String.format("%.2f", balance));
+            Console.info("   Current Balance: $" + Money.format(balance));
             Console.info("   Number of Transactions: " + account.getTransactions().size());
 
             // Show recent transaction if available
             if (!account.getTransactions().isEmpty()) {
                 Transaction lastTransaction = account.getTransactions().get(account.getTransactions().size() - 1);
                 Console.info("   Last Transaction: " + lastTransaction.getTransactionType() +
-                        " - $" + String.format("%.2f", lastTransaction.getAmount()) +
+                        " - $" + Money.format(lastTransaction.getAmountMinorUnits()) +
                         " on " + lastTransaction.getFormattedDateTime());
             }
             Console.line();
         }
 
-        Console.success("Total Balance Across All Accounts: $" + String.format("%.2f", grandTotal));
+        Console.success("Total Balance Across All Accounts: $" + Money.format(grandTotal));
         Console.line();
     }
 
@@ -191,7 +198,7 @@ public final class CustomerController {
         for (int i = 0; i < accounts.size(); i++) {
             Account account = accounts.get(i);
             Console.info((i + 1) + ") " + account.getAccountType() +
-                    " - Balance: $" + String.format("%.2f", account.getBalance()));
+                    " - Balance: $" + Money.format(account.getBalanceMinorUnits()));
         }
         Console.line();
 
@@ -216,7 +223,7 @@ public final class CustomerController {
         Console.success("=== Detailed Account Information ===");
         Console.info("Account Type: " + account.getAccountType());
         Console.info("Account ID: " + account.getId());
-        Console.info("Current Balance: $" + String.format("%.2f", account.getBalance()));
+        Console.info("Current Balance: $" + Money.format(account.getBalanceMinorUnits()));
         Console.info("Owner: " + account.getCustomer().getFullName());
 
         List<Transaction> transactions = account.getTransactions();
@@ -224,31 +231,36 @@ public final class CustomerController {
 
         if (!transactions.isEmpty()) {
             // Calculate statistics for this account
-            double totalDeposits = transactions.stream()
+            long totalDeposits = transactions.stream()
                     .filter(t -> t.getTransactionType() == TransactionType.DEPOSIT ||
                             (t.getTransactionType() == TransactionType.TRANSFER &&
                                     t.getDestinationAccount().equals(account)))
-                    .mapToDouble(Transaction::getAmount)
-                    .sum();
+                    .mapToLong(Transaction::getAmountMinorUnits)
+                    .reduce(0, Money::add);
 
-            double totalWithdrawals = transactions.stream()
+            long totalWithdrawals = transactions.stream()
                     .filter(t -> t.getTransactionType() == TransactionType.WITHDRAWAL ||
                             (t.getTransactionType() == TransactionType.TRANSFER &&
                                     t.getSourceAccount().equals(account)))
-                    .mapToDouble(Transaction::getAmount)
-                    .sum();
+                    .mapToLong(Transaction::getAmountMinorUnits)
+                    .reduce(0, Money::add);
 
             Console.line();
             Console.info("Account Transaction Statistics:");
-            Console.info("  Total Money In: +$" + String.format("%.2f", totalDeposits));
-            Console.info("  Total Money Out: -$" + String.format("%.2f", totalWithdrawals));
-            Console.info("  Net Change: $" + String.format("%.2f", (totalDeposits - totalWithdrawals)));
+            Console.info("  Total Money In: +$" + Money.format(totalDeposits));
+            Console.info("  Total Money Out: -$" + Money.format(totalWithdrawals));
+            Console.info("  Net Change: $" + Money.format(Money.subtract(totalDeposits, totalWithdrawals)));
 
             // Show first and last transaction dates with time
             Console.info("  First Transaction: " + transactions.get(0).getFormattedDateTime());
             Console.info("  Last Transaction: " + transactions.get(transactions.size() - 1).getFormattedDateTime());
         }
         Console.line();
+
+        String balanceChoice = Console.ask("Do you want to see the balance on a past date? (y/N): ");
+        if (balanceChoice.toLowerCase().equals("y") || balanceChoice.toLowerCase().equals("yes")) {
+            statisticsService.displayBalanceAt(account);
+        }
     }
 
     private void viewAllMyTransactions(Customer customer) {
@@ -301,7 +313,8 @@ public final class CustomerController {
         Console.info("Filter Your Transactions:");
         Console.info("Total transactions available: " + allTransactions.size());
 
-        ArrayList<Transaction> filteredTransactions = filterService.filterTransactions(allTransactions);
+        ArrayList<Transaction> filteredTransactions = filterService.filterTransactions(allTransactions,
+                (from, to) -> transactionRepository.findByDateRange(customer.getAccounts(), from, to));
 
         if (filteredTransactions.isEmpty()) {
             Console.warning("No transactions match your filter criteria.");
@@ -343,7 +356,7 @@ public final class CustomerController {
         for (int i = 0; i < accounts.size(); i++) {
             Account account = accounts.get(i);
             Console.info((i + 1) + ") " + account.getAccountType() +
-                    " - Balance: $" + String.format("%.2f", account.getBalance()) +
+                    " - Balance: $" + Money.format(account.getBalanceMinorUnits()) +
                     " - ID: " + account.getId());
         }
         Console.line();
@@ -378,8 +391,7 @@ public final class CustomerController {
                 AccountType selectedType = accountTypes[typeIndex];
 
                 // Check if customer already has this type of account
-                boolean hasAccountType = customer.getAccounts().stream()
-                        .anyMatch(account -> account.getAccountType() == selectedType);
+                boolean hasAccountType = accountRepository.hasAccountType(customer.getId(), selectedType);
 
                 if (hasAccountType) {
                     Console.error("You already have a " + selectedType + " account.");
@@ -402,7 +414,7 @@ public final class CustomerController {
         while (true) {
             Console.line();
             Console.info("Transaction Management for Account: " + account.getAccountType());
-            Console.info("Balance: $" + String.format("%.2f", account.getBalance()));
+            Console.info("Balance: $" + Money.format(account.getBalanceMinorUnits()));
             Console.info("1) View transaction history");
             Console.info("2) View filtered transactions");
             Console.info("3) View all my transactions (all accounts)");
@@ -8,6 +8,7 @@ import repositories.AccountRepository;
 import repositories.CustomerRepository;
 import repositories.TransactionRepository;
 import utils.Console;
+import utils.Money;
 import exceptions.NegativeAmountException;
 import exceptions.CustomerNotFoundException;
 import exceptions.AccountNotFoundException;
@@ -16,7 +17,7 @@ import exceptions.InsufficientFundsException;
 import exceptions.SuspiciousActivityException;
 import services.FilterService;
 import services.StatisticsService;
-import services.SuspiciousTransactionDetector;
+import services.PostingService;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -28,7 +29,7 @@ public final class TransactionController {
     private CustomerRepository customerRepository;
     private FilterService filterService;
     private StatisticsService statisticsService;
-    private SuspiciousTransactionDetector suspiciousDetector;
+    private PostingService postingService;
 
     public TransactionController() {
         this.transactionRepository = TransactionRepository.getInstance();
@@ -36,7 +37,7 @@ public final class TransactionController {
         this.customerRepository = CustomerRepository.getInstance();
         this.filterService = FilterService.getInstance();
         this.statisticsService = StatisticsService.getInstance();
-        this.suspiciousDetector = new SuspiciousTransactionDetector();
+        this.postingService = PostingService.getInstance();
     }
 
     public void viewTransactionHistory(Account account) {
@@ -77,17 +78,8 @@ public final class TransactionController {
                 description = "Deposit";
             }
 
-            Transaction deposit = new Transaction(
-                    TransactionType.DEPOSIT,
-                    amount,
-                    description,
-                    account,
-                    account);
-
-            // Check for suspicious activity
-            validateSuspiciousActivity(account.getTransactions(), deposit);
-
-            transactionRepository.save(deposit);
+            // Validates, screens for suspicious activity and posts
+            PostingService.await(postingService.deposit(account, amount, description));
             Console.success("Deposit added successfully!");
             Console.info("New balance: $" + String.format("%.2f", account.getBalance()));
 
@@ -120,17 +112,8 @@ public final class TransactionController {
                 description = "Withdrawal";
             }
 
-            Transaction withdrawal = new Transaction(
-                    TransactionType.WITHDRAWAL,
-                    amount,
-                    description,
-                    account,
-                    account);
-
-            // Check for suspicious activity
-            validateSuspiciousActivity(account.getTransactions(), withdrawal);
-
-            transactionRepository.save(withdrawal);
+            // Validates, screens for suspicious activity and posts
+            PostingService.await(postingService.withdraw(account, amount, description));
             Console.success("Withdrawal added successfully!");
             Console.info("New balance: $" + String.format("%.2f", account.getBalance()));
 
@@ -173,17 +156,8 @@ public final class TransactionController {
                 description = "Transfer";
             }
 
-            Transaction transfer = new Transaction(
-                    TransactionType.TRANSFER,
-                    amount,
-                    description,
-                    sourceAccount,
-                    destinationAccount);
-
-            // Check for suspicious activity
-            validateSuspiciousActivity(sourceAccount.getTransactions(), transfer);
-
-            transactionRepository.save(transfer);
+            // Validates, screens for suspicious activity and posts
+            PostingService.await(postingService.transfer(sourceAccount, destinationAccount, amount, description));
             Console.success("Transfer completed successfully!");
             Console.info("Source account new balance: $" + String.format("%.2f", sourceAccount.getBalance()));
             Console.info("Destination account new balance: $" + String.format("%.2f", destinationAccount.getBalance()));
@@ -259,7 +233,9 @@ public final class TransactionController {
             Console.info("Transaction Filtering for Account: " + account.getAccountType());
             Console.info("Current Balance: $" + String.format("%.2f", account.getBalance()));
 
-            ArrayList<Transaction> filteredTransactions = filter(new ArrayList<>(transactions));
+            ArrayList<Transaction> filteredTransactions = filterService.filterTransactions(
+                    new ArrayList<>(transactions),
+                    (from, to) -> transactionRepository.findByDateRange(List.of(account), from, to));
 
             if (filteredTransactions.isEmpty()) {
                 Console.warning("No transactions match the selected filters.");
@@ -321,27 +297,19 @@ public final class TransactionController {
     }
 
     private void validatePositiveAmount(double amount) throws NegativeAmountException {
-        if (amount <= 0) {
-            throw new NegativeAmountException(amount);
-        }
+        postingService.validatePositiveAmount(amount);
     }
 
     private void validateAccount(Account account) throws AccountNotFoundException {
-        if (account == null) {
-            throw new AccountNotFoundException("Account is null");
-        }
+        postingService.validateAccount(account);
     }
 
     private void validateSufficientFunds(Account account, double amount) throws InsufficientFundsException {
-        if (amount > account.getBalance()) {
-            throw new InsufficientFundsException(amount, account.getBalance());
-        }
+        postingService.validateSufficientFunds(account, amount);
     }
 
     private void validateTransferAccounts(Account source, Account destination) throws InvalidTransactionException {
-        if (source.getId().equals(destination.getId())) {
-            throw new InvalidTransactionException("transfer", "Cannot transfer to the same account");
-        }
+        postingService.validateTransferAccounts(source, destination);
     }
 
     private void validateTransactionIndex(int index, int size) throws InvalidTransactionException {
@@ -421,21 +389,8 @@ public final class TransactionController {
             // Create reverse transaction to undo the balance effects
             Transaction reverseTransaction = createReverseTransaction(transactionToDelete);
 
-            // Apply the reverse transaction to fix balances
-            transactionToDelete.getSourceAccount().addTransaction(reverseTransaction);
-            if (!transactionToDelete.getSourceAccount().equals(transactionToDelete.getDestinationAccount())) {
-                transactionToDelete.getDestinationAccount().addTransaction(reverseTransaction);
-            }
-
-            // Remove from repositories and accounts
-            transactionRepository.delete(transactionToDelete);
-            account.getTransactions().remove(transactionToDelete);
-
-            // If it's a transfer, also remove from destination account
-            if (transactionToDelete.getTransactionType() == TransactionType.TRANSFER &&
-                    !transactionToDelete.getDestinationAccount().equals(account)) {
-                transactionToDelete.getDestinationAccount().getTransactions().remove(transactionToDelete);
-            }
+            // Apply the reversal and drop the original from the ledger and both accounts' histories
+            transactionRepository.reverse(transactionToDelete, reverseTransaction);
         } catch (Exception e) {
             throw new InvalidTransactionException("deletion",
                     "Failed to reverse transaction effects: " + e.getMessage());
@@ -480,34 +435,32 @@ public final class TransactionController {
         Console.success("Filtered Results (" + transactions.size() + " transactions):");
         Console.line();
 
-        double totalIn = 0, totalOut = 0;
+        long totalIn = 0, totalOut = 0;
 
         for (int i = 0; i < transactions.size(); i++) {
             Transaction t = transactions.get(i);
             String sign = "";
-            double effectiveAmount = 0;
+            long effectiveAmount = t.getAmountMinorUnits();
 
             if (t.getTransactionType() == TransactionType.DEPOSIT ||
                     (t.getTransactionType() == TransactionType.TRANSFER && t.getDestinationAccount().equals(account))) {
                 sign = "+";
-                effectiveAmount = t.getAmount();
-                totalIn += effectiveAmount;
+                totalIn = Money.add(totalIn, effectiveAmount);
             } else {
                 sign = "-";
-                effectiveAmount = t.getAmount();
-                totalOut += effectiveAmount;
+                totalOut = Money.add(totalOut, effectiveAmount);
             }
 
             Console.info((i + 1) + ") " + t.getTransactionType() + " | " + sign + "$" +
-                    String.format("%.2f", effectiveAmount) + " | " + t.getDescription() +
+                    Money.format(effectiveAmount) + " | " + t.getDescription() +
                     " | " + t.getFormattedDateTime() + " | ID: " + t.getId());
         }
 
         Console.line();
         Console.success("Summary:");
-        Console.info("Total Credits: +$" + String.format("%.2f", totalIn));
-        Console.info("Total Debits: -$" + String.format("%.2f", totalOut));
-        Console.info("Net Change: $" + String.format("%.2f", (totalIn - totalOut)));
+        Console.info("Total Credits: +$" + Money.format(totalIn));
+        Console.info("Total Debits: -$" + Money.format(totalOut));
+        Console.info("Net Change: $" + Money.format(Money.subtract(totalIn, totalOut)));
         Console.line();
     }
 
@@ -531,9 +484,4 @@ public final class TransactionController {
         statisticsService.displaySystemStatistics(transactions);
     }
 
-    private void validateSuspiciousActivity(List<Transaction> transactions, Transaction newTransaction)
-            throws SuspiciousActivityException {
-        suspiciousDetector.validateTransaction(transactions, newTransaction);
-    }
-
 }
@@ -1,39 +1,92 @@
 package models;
 
-import java.util.ArrayList;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import exceptions.InvalidTransactionException;
 import exceptions.InsufficientFundsException;
 import exceptions.NegativeAmountException;
+import utils.Ids;
+import utils.Money;
 
 public class Account {
+    private static final AtomicInteger NEXT_ORDINAL = new AtomicInteger();
+
     private UUID id;
     private AccountType accountType;
-    private double balance;
-    private List<Transaction> transactions;
+    // Minor units, see utils.Money
+    private volatile long balance;
+    private Ledger transactions;
+    private BalanceHistory balanceHistory;
     private Customer customer;
+    // Guards balance and history; taken through TransferEngine in account id order
+    final ReentrantLock lock = new ReentrantLock();
+    // Dense process-local number, a compact stand-in for the id in per-account counters
+    private final int ordinal = NEXT_ORDINAL.getAndIncrement();
 
     public Account(AccountType accountType, Customer customer) {
-        this.id = UUID.randomUUID();
+        this(Ids.next(), accountType, customer);
+    }
+
+    // Rebuilds a persisted account with its original id; the balance is rebuilt by replaying its transactions
+    public Account(UUID id, AccountType accountType, Customer customer) {
+        this(id, accountType, customer, 0);
+    }
+
+    // Rebuilds an account from a snapshot, where the balance is stored rather than replayed
+    public Account(UUID id, AccountType accountType, Customer customer, long balance) {
+        this.id = id;
         this.accountType = accountType;
         this.customer = customer;
-        this.transactions = new ArrayList<>();
-        this.balance = 0;
+        this.transactions = new Ledger(this);
+        this.balance = balance;
+        this.balanceHistory = new BalanceHistory(balance);
     }
 
     public UUID getId() {
         return id;
     }
 
+    int ordinal() {
+        return ordinal;
+    }
+
     public AccountType getAccountType() {
         return accountType;
     }
 
     public double getBalance() {
+        return Money.toMajor(balance);
+    }
+
+    public long getBalanceMinorUnits() {
         return balance;
     }
 
+    /**
+     * Balance at the end of the given instant, from the running-balance
+     * checkpoints rather than by replaying the history.
+     */
+    public double balanceAt(LocalDateTime dateTime) {
+        return Money.toMajor(balanceHistory.balanceAt(dateTime));
+    }
+
+    public long balanceAtMinorUnits(LocalDateTime dateTime) {
+        return balanceHistory.balanceAt(dateTime);
+    }
+
+    public BalanceHistory getBalanceHistory() {
+        return balanceHistory;
+    }
+
+    // Replaces the checkpoints when restoring a snapshot; returns the empty history to fill
+    public BalanceHistory restoreBalanceHistory(long openingBalance) {
+        balanceHistory = new BalanceHistory(openingBalance);
+        return balanceHistory;
+    }
+
     public Customer getCustomer() {
         return customer;
     }
@@ -42,41 +95,65 @@ public class Account {
         return transactions;
     }
 
-    public void addTransaction(Transaction transaction) {
+    // Appends to the history without touching the balance; used when restoring a snapshot
+    public void restoreTransaction(Transaction transaction) {
+        transactions.add(transaction);
+    }
+
+    // Balance once this account's side of the transaction is applied; changes nothing. Called with the lock held
+    long balanceAfter(Transaction transaction) {
+        return balanceAfter(transaction, balance);
+    }
+
+    // Same, starting from the given balance rather than the current one
+    long balanceAfter(Transaction transaction, long from) {
         if (transaction == null) {
             throw new InvalidTransactionException("transaction", "Transaction cannot be null");
         }
-        if (transaction.getAmount() <= 0) {
+        long amount = transaction.getAmountMinorUnits();
+        if (amount <= 0) {
             throw new NegativeAmountException(transaction.getAmount());
         }
 
-        transactions.add(transaction);
-
-        // Update balance based on transaction type
+        long updated = from;
         switch (transaction.getTransactionType()) {
             case DEPOSIT:
-                balance += transaction.getAmount();
-                break;
+                return Money.add(updated, amount);
             case WITHDRAWAL:
-                if (balance < transaction.getAmount()) {
-                    throw new InsufficientFundsException(transaction.getAmount(), balance);
+                if (updated < amount) {
+                    throw new InsufficientFundsException(transaction.getAmount(), Money.toMajor(updated));
                 }
-                balance -= transaction.getAmount();
-                break;
+                return Money.subtract(updated, amount);
             case TRANSFER:
                 if (transaction.getSourceAccount() == this) {
-                    if (balance < transaction.getAmount()) {
-                        throw new InsufficientFundsException(transaction.getAmount(), balance);
+                    if (updated < amount) {
+                        throw new InsufficientFundsException(transaction.getAmount(), Money.toMajor(updated));
                     }
-                    balance -= transaction.getAmount();
+                    updated = Money.subtract(updated, amount);
                 }
                 if (transaction.getDestinationAccount() == this) {
-                    balance += transaction.getAmount();
+                    updated = Money.add(updated, amount);
                 }
-                break;
+                return updated;
             default:
                 throw new InvalidTransactionException("transaction",
                         "Unknown transaction type: " + transaction.getTransactionType());
         }
     }
+
+    // Called with the lock held, once balanceAfter has validated the transaction
+    void commit(Transaction transaction, long newBalance) {
+        transactions.add(transaction);
+        balance = newBalance;
+        balanceHistory.record(transaction.getDateTime(), newBalance);
+    }
+
+    // Commits a run of postings at once; balances[i] is the balance after postings.get(i)
+    void commitAll(List<Transaction> postings, long[] balances) {
+        for (int i = 0; i < postings.size(); i++) {
+            transactions.add(postings.get(i));
+            balanceHistory.record(postings.get(i).getDateTime(), balances[i]);
+        }
+        balance = balances[postings.size() - 1];
+    }
 }
@@ -0,0 +1,107 @@
+package models;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * Running-balance checkpoints for one account: the balance right after each
+ * posting, keyed by posting time. Checkpoints are facts about the past, so
+ * deleting a transaction from the history later leaves them alone, and a
+ * point-in-time balance is a binary search with nothing to replay.
+ *
+ * Times never go backwards: a posting stamped earlier than the previous one
+ * (clock skew, or a transaction created before a concurrent one that posted
+ * first) is recorded at the previous time. Costs 16 bytes per posting.
+ */
+public final class BalanceHistory {
+    private final long openingBalance;
+    // Nanoseconds since the epoch at UTC, sorted ascending
+    private long[] times;
+    private long[] balances;
+    private int size;
+
+    BalanceHistory(long openingBalance) {
+        this(openingBalance, new long[8], new long[8], 0);
+    }
+
+    private BalanceHistory(long openingBalance, long[] times, long[] balances, int size) {
+        this.openingBalance = openingBalance;
+        this.times = times;
+        this.balances = balances;
+        this.size = size;
+    }
+
+    synchronized void record(LocalDateTime postedAt, long balance) {
+        long time = Transaction.epochNanos(postedAt);
+        if (size > 0 && time < times[size - 1]) {
+            time = times[size - 1];
+        }
+        append(time, balance);
+    }
+
+    /**
+     * Restores a checkpoint written by {@link #forEach}; only meant for
+     * loading a snapshot, in the order they were written.
+     */
+    public synchronized void restore(long epochNanos, long balance) {
+        if (size > 0 && epochNanos < times[size - 1]) {
+            throw new IllegalArgumentException("Balance checkpoints must be restored in time order");
+        }
+        append(epochNanos, balance);
+    }
+
+    /**
+     * Balance in minor units at the end of the given instant: the last
+     * checkpoint at or before it, or the opening balance if there is none.
+     */
+    public synchronized long balanceAt(LocalDateTime dateTime) {
+        long time = Transaction.epochNanos(dateTime);
+        // First checkpoint strictly after the given time
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] <= time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo == 0 ? openingBalance : balances[lo - 1];
+    }
+
+    public long getOpeningBalance() {
+        return openingBalance;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    @FunctionalInterface
+    public interface CheckpointConsumer {
+        void accept(long epochNanos, long balance);
+    }
+
+    public synchronized void forEach(CheckpointConsumer action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(times[i], balances[i]);
+        }
+    }
+
+    // Independent copy, for snapshots
+    public synchronized BalanceHistory copy() {
+        return new BalanceHistory(openingBalance, Arrays.copyOf(times, Math.max(size, 1)),
+                Arrays.copyOf(balances, Math.max(size, 1)), size);
+    }
+
+    private void append(long time, long balance) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            balances = Arrays.copyOf(balances, size * 2);
+        }
+        times[size] = time;
+        balances[size] = balance;
+        size++;
+    }
+}
@@ -1,14 +1,22 @@
 package models;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Customer extends Person {
     private List<Account> accounts;
 
     public Customer(String firstName, String lastName, String email, String password, UserType userType) {
         super(firstName, lastName, email, password, userType);
-        this.accounts = new ArrayList<>();
+        // Written rarely (account creation) and read on every menu render
+        this.accounts = new CopyOnWriteArrayList<>();
+    }
+
+    // Rebuilds a persisted customer with its original id
+    public Customer(UUID id, String firstName, String lastName, String email, String password, UserType userType) {
+        super(id, firstName, lastName, email, password, userType);
+        this.accounts = new CopyOnWriteArrayList<>();
     }
 
     public List<Account> getAccounts() {
@@ -19,6 +27,10 @@ public class Customer extends Person {
         accounts.add(account);
     }
 
+    public void removeAccount(Account account) {
+        accounts.remove(account);
+    }
+
     // Setter methods for admin updates
     public void setFirstName(String firstName) {
         super.setFirstName(firstName);
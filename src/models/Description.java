@@ -0,0 +1,113 @@
+package models;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An interned transaction description. Ledgers repeat a small set of
+ * descriptions, so every transaction with the same text shares one entry,
+ * which also carries the lowercase form and the result of the last keyword
+ * search against it.
+ *
+ * The dictionary holds entries weakly: once no transaction refers to an
+ * entry it is collected and its text dropped, so memo text typed by
+ * customers does not outlive the transactions carrying it.
+ */
+public final class Description {
+    private static final ConcurrentMap<String, Entry> DICTIONARY = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Description> COLLECTED = new ReferenceQueue<>();
+
+    // Dictionary slot; remembers its key so it can be removed once collected
+    private static final class Entry extends WeakReference<Description> {
+        final String key;
+
+        Entry(Description description) {
+            super(description, COLLECTED);
+            this.key = description.text;
+        }
+    }
+
+    private final String text;
+    private final String lowerCase;
+    // Last keyword searched for and whether it matched, replaced as a unit
+    private volatile KeywordMatch lastMatch;
+
+    private static final class KeywordMatch {
+        final String keyword;
+        final boolean matches;
+
+        KeywordMatch(String keyword, boolean matches) {
+            this.keyword = keyword;
+            this.matches = matches;
+        }
+    }
+
+    private Description(String text) {
+        this.text = text;
+        // toLowerCase returns the same instance when nothing changes
+        this.lowerCase = text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the shared entry for the given text, creating it on first use.
+     */
+    public static Description of(String text) {
+        expunge();
+        Entry entry = DICTIONARY.get(text);
+        Description d = entry != null ? entry.get() : null;
+        while (d == null) {
+            Description created = new Description(text);
+            Entry mine = new Entry(created);
+            entry = DICTIONARY.merge(text, mine, (old, fresh) -> old.get() != null ? old : fresh);
+            d = entry.get();
+        }
+        return d;
+    }
+
+    // Number of distinct descriptions still referenced, plus any not yet expunged
+    public static int dictionarySize() {
+        expunge();
+        return DICTIONARY.size();
+    }
+
+    // Drops the slots of collected entries, unless the text was interned again since
+    private static void expunge() {
+        Reference<? extends Description> ref;
+        while ((ref = COLLECTED.poll()) != null) {
+            Entry entry = (Entry) ref;
+            DICTIONARY.remove(entry.key, entry);
+        }
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getLowerCase() {
+        return lowerCase;
+    }
+
+    /**
+     * Whether the description contains the keyword, which must already be
+     * lowercase. A search over many rows checks each distinct description
+     * once and answers the rest from the cached result.
+     */
+    public boolean containsLowerCase(String keyword) {
+        KeywordMatch last = lastMatch;
+        if (last != null && (last.keyword == keyword || last.keyword.equals(keyword))) {
+            return last.matches;
+        }
+        boolean matches = lowerCase.contains(keyword);
+        lastMatch = new KeywordMatch(keyword, matches);
+        return matches;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,315 @@
+package models;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * An account's transaction history: append-only fixed-size chunks where a
+ * delete only clears the slot (a tombstone). Each transaction remembers its
+ * slot in the source and destination ledgers, so removing it is O(1).
+ *
+ * Once enough tombstones pile up, a background thread rewrites the live
+ * entries into fresh chunks and swaps them in. Iterators keep reading the
+ * chunks they started on, so they never fail because of a compaction; they
+ * are weakly consistent and never show entries appended after they started.
+ *
+ * The posting times of the most recent entries are also kept in a small
+ * ring, and live entries are counted by type, amount and destination, so
+ * fraud checks such as burst and repetition detection need not walk the
+ * history.
+ */
+public final class Ledger extends AbstractList<Transaction> {
+
+    private static final int CHUNK_SIZE = 256;
+    // How many of the latest posting times the ring keeps
+    public static final int RECENT_POSTINGS = 16;
+    // Compact when at least this share of the slots are dead
+    private static final int COMPACT_DEAD_DIVISOR = 4;
+
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ledger-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Account owner;
+    private volatile Transaction[][] chunks = new Transaction[1][CHUNK_SIZE];
+    // Live entries per chunk, so positional access can skip whole chunks
+    private int[] liveInChunk = new int[1];
+    private int slots;
+    private int live;
+    private boolean compactionPending;
+    // Epoch millis of the latest live entries in append order; recentNext is the oldest once full
+    private final long[] recentMillis = new long[RECENT_POSTINGS];
+    private int recentCount;
+    private int recentNext;
+    // Set when an entry is removed; the ring is refilled from the tail on next use
+    private boolean recentStale;
+    private final PatternCounts patterns = new PatternCounts();
+
+    Ledger(Account owner) {
+        this.owner = owner;
+    }
+
+    @Override
+    public synchronized boolean add(Transaction t) {
+        Objects.requireNonNull(t, "transaction");
+        int chunk = slots / CHUNK_SIZE;
+        if (chunk == chunks.length) {
+            Transaction[][] grown = Arrays.copyOf(chunks, chunks.length * 2);
+            for (int i = chunks.length; i < grown.length; i++) {
+                grown[i] = new Transaction[CHUNK_SIZE];
+            }
+            chunks = grown;
+            liveInChunk = Arrays.copyOf(liveInChunk, grown.length);
+        }
+        chunks[chunk][slots % CHUNK_SIZE] = t;
+        liveInChunk[chunk]++;
+        setSlot(t, slots);
+        slots++;
+        live++;
+        patterns.increment(t);
+        if (!recentStale) {
+            remember(t);
+        }
+        return true;
+    }
+
+    /**
+     * Counts how many of the latest {@link #RECENT_POSTINGS} entries were
+     * posted between the two times, inclusive. Bounded work and no
+     * allocation, whatever the length of the history.
+     */
+    public synchronized int countRecentBetween(long fromMillis, long toMillis) {
+        if (recentStale) {
+            refillRecent();
+        }
+        int count = 0;
+        for (int i = 0; i < recentCount; i++) {
+            long t = recentMillis[i];
+            if (t >= fromMillis && t <= toMillis) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Tombstones the entry. Uses the slot stored on the transaction when it
+     * still points at it, otherwise falls back to a search by id (for
+     * instance when given a copy of the transaction).
+     */
+    @Override
+    public synchronized boolean remove(Object o) {
+        if (!(o instanceof Transaction)) {
+            return false;
+        }
+        Transaction t = (Transaction) o;
+        int slot = slotOf(t);
+        if (slot >= 0 && slot < slots && matches(entryAt(slot), t)) {
+            kill(slot);
+            return true;
+        }
+        for (slot = 0; slot < slots; slot++) {
+            if (matches(entryAt(slot), t)) {
+                kill(slot);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized boolean removeIf(Predicate<? super Transaction> filter) {
+        boolean removed = false;
+        for (int slot = 0; slot < slots; slot++) {
+            Transaction t = entryAt(slot);
+            if (t != null && filter.test(t)) {
+                kill(slot);
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public synchronized Transaction get(int index) {
+        if (index < 0 || index >= live) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of " + live);
+        }
+        int chunk = 0;
+        while (index >= liveInChunk[chunk]) {
+            index -= liveInChunk[chunk];
+            chunk++;
+        }
+        for (Transaction t : chunks[chunk]) {
+            if (t != null && index-- == 0) {
+                return t;
+            }
+        }
+        throw new IllegalStateException("Ledger chunk counts out of sync");
+    }
+
+    @Override
+    public synchronized int size() {
+        return live;
+    }
+
+    // Walks the chunks directly, skipping tombstones without allocating
+    @Override
+    public synchronized void forEach(Consumer<? super Transaction> action) {
+        for (int slot = 0; slot < slots; slot++) {
+            Transaction t = entryAt(slot);
+            if (t != null) {
+                action.accept(t);
+            }
+        }
+    }
+
+    @Override
+    public Iterator<Transaction> iterator() {
+        Transaction[][] view;
+        int limit;
+        synchronized (this) {
+            view = chunks;
+            limit = slots;
+        }
+        return new Iterator<Transaction>() {
+            private int slot;
+            // Fetched by hasNext, so next returns it even if it is deleted in between
+            private Transaction pending;
+            private Transaction last;
+
+            @Override
+            public boolean hasNext() {
+                while (pending == null && slot < limit) {
+                    pending = view[slot / CHUNK_SIZE][slot % CHUNK_SIZE];
+                    slot++;
+                }
+                return pending != null;
+            }
+
+            @Override
+            public Transaction next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                last = pending;
+                pending = null;
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                Ledger.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    /**
+     * Number of live entries with the same type, amount in minor units and
+     * destination account as the given transaction; a single table probe.
+     */
+    public synchronized int countLike(Transaction t) {
+        return patterns.count(t);
+    }
+
+    private void remember(Transaction t) {
+        recentMillis[recentNext] = t.getEpochMillis();
+        recentNext = (recentNext + 1) % RECENT_POSTINGS;
+        recentCount = Math.min(recentCount + 1, RECENT_POSTINGS);
+    }
+
+    // Rebuilds the ring from the latest live entries after a removal
+    private void refillRecent() {
+        int first = slots;
+        for (int found = 0; first > 0 && found < RECENT_POSTINGS; ) {
+            if (entryAt(--first) != null) {
+                found++;
+            }
+        }
+        recentCount = 0;
+        recentNext = 0;
+        for (int slot = first; slot < slots; slot++) {
+            Transaction t = entryAt(slot);
+            if (t != null) {
+                remember(t);
+            }
+        }
+        recentStale = false;
+    }
+
+    private Transaction entryAt(int slot) {
+        return chunks[slot / CHUNK_SIZE][slot % CHUNK_SIZE];
+    }
+
+    private void kill(int slot) {
+        Transaction t = entryAt(slot);
+        chunks[slot / CHUNK_SIZE][slot % CHUNK_SIZE] = null;
+        liveInChunk[slot / CHUNK_SIZE]--;
+        live--;
+        setSlot(t, -1);
+        patterns.decrement(t);
+        recentStale = true;
+        scheduleCompactionIfNeeded();
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        int dead = slots - live;
+        if (!compactionPending && dead >= CHUNK_SIZE && dead * COMPACT_DEAD_DIVISOR >= slots) {
+            compactionPending = true;
+            COMPACTOR.execute(this::compact);
+        }
+    }
+
+    /**
+     * Rewrites the live entries into new chunks and swaps them in. The old
+     * chunks are left untouched for iterators still reading them.
+     */
+    synchronized void compact() {
+        compactionPending = false;
+        int chunkCount = Math.max(1, (live + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        Transaction[][] compacted = new Transaction[chunkCount][CHUNK_SIZE];
+        int[] counts = new int[chunkCount];
+        int next = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            Transaction t = entryAt(slot);
+            if (t != null) {
+                compacted[next / CHUNK_SIZE][next % CHUNK_SIZE] = t;
+                counts[next / CHUNK_SIZE]++;
+                setSlot(t, next);
+                next++;
+            }
+        }
+        chunks = compacted;
+        liveInChunk = counts;
+        slots = next;
+    }
+
+    private static boolean matches(Transaction entry, Transaction t) {
+        return entry != null && (entry == t || entry.getId().equals(t.getId()));
+    }
+
+    private int slotOf(Transaction t) {
+        return t.getSourceAccount() == owner ? t.sourceSlot : t.destinationSlot;
+    }
+
+    private void setSlot(Transaction t, int slot) {
+        if (t.getSourceAccount() == owner) {
+            t.sourceSlot = slot;
+        } else {
+            t.destinationSlot = slot;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package models;
+
+import java.util.Arrays;
+
+/**
+ * Counts of an account's postings by (type, amount, destination), in an
+ * open-addressing table of primitive arrays so that counting and probing
+ * never allocate. Keys whose count drops to zero stay until the next
+ * resize. Not thread-safe; Ledger guards it.
+ */
+final class PatternCounts {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int EMPTY = -1;
+
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    // Type ordinal in the top 3 bits, destination account ordinal below; EMPTY marks a free slot
+    private int[] typeAndDestination = newKeys(INITIAL_CAPACITY);
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private int used;
+
+    void increment(Transaction t) {
+        int slot = find(t.getAmountMinorUnits(), keyOf(t));
+        if (typeAndDestination[slot] == EMPTY) {
+            typeAndDestination[slot] = keyOf(t);
+            amounts[slot] = t.getAmountMinorUnits();
+            used++;
+        }
+        counts[slot]++;
+        if (used * 2 > counts.length) {
+            resize();
+        }
+    }
+
+    void decrement(Transaction t) {
+        int slot = find(t.getAmountMinorUnits(), keyOf(t));
+        if (typeAndDestination[slot] != EMPTY && counts[slot] > 0) {
+            counts[slot]--;
+        }
+    }
+
+    // Number of counted postings with the same type, amount and destination as t
+    int count(Transaction t) {
+        int slot = find(t.getAmountMinorUnits(), keyOf(t));
+        return typeAndDestination[slot] == EMPTY ? 0 : counts[slot];
+    }
+
+    private int find(long amount, int key) {
+        int mask = counts.length - 1;
+        int slot = hash(amount, key) & mask;
+        while (typeAndDestination[slot] != EMPTY
+                && (typeAndDestination[slot] != key || amounts[slot] != amount)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Doubles the table when more than half full of live keys, otherwise just drops the zero counts
+    private void resize() {
+        long[] oldAmounts = amounts;
+        int[] oldKeys = typeAndDestination;
+        int[] oldCounts = counts;
+        int live = 0;
+        for (int c : oldCounts) {
+            if (c > 0) {
+                live++;
+            }
+        }
+        int capacity = oldCounts.length;
+        while (live * 2 > capacity / 2) {
+            capacity *= 2;
+        }
+        amounts = new long[capacity];
+        typeAndDestination = newKeys(capacity);
+        counts = new int[capacity];
+        used = 0;
+        for (int i = 0; i < oldCounts.length; i++) {
+            if (oldCounts[i] > 0) {
+                int slot = find(oldAmounts[i], oldKeys[i]);
+                amounts[slot] = oldAmounts[i];
+                typeAndDestination[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+                used++;
+            }
+        }
+    }
+
+    // Ordinals past 2^29 wrap, which at worst merges two destinations' counts
+    private static int keyOf(Transaction t) {
+        return t.getTransactionType().ordinal() << 29 | (t.getDestinationAccount().ordinal() & 0x1FFFFFFF);
+    }
+
+    private static int hash(long amount, int key) {
+        long h = (amount * 0x9E3779B97F4A7C15L) ^ key;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int[] newKeys(int capacity) {
+        int[] keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        return keys;
+    }
+}
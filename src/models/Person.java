@@ -1,6 +1,7 @@
 package models;
 
 import java.util.UUID;
+import utils.Ids;
 
 public abstract class Person {
     private UUID id;
@@ -11,7 +12,12 @@ public abstract class Person {
     private UserType userType;
 
     public Person(String firstName, String lastName, String email, String password, UserType userType) {
-        this.id = UUID.randomUUID();
+        this(Ids.next(), firstName, lastName, email, password, userType);
+    }
+
+    // Rebuilds a persisted person with its original id
+    protected Person(UUID id, String firstName, String lastName, String email, String password, UserType userType) {
+        this.id = id;
         this.firstName = firstName;
         this.lastName = lastName;
         this.email = email;
@@ -1,20 +1,27 @@
 package models;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.UUID;
 import exceptions.AccountNotFoundException;
 import exceptions.InvalidTransactionException;
 import exceptions.NegativeAmountException;
+import utils.Ids;
+import utils.Money;
 
 public class Transaction {
     private UUID id;
     private TransactionType transactionType;
-    private double amount;
+    // Minor units, see utils.Money
+    private long amount;
     private LocalDateTime dateTime;
-    private String description;
+    private Description description;
     private Account sourceAccount;
     private Account destinationAccount;
+    // Slots in the source and destination ledgers, maintained by Ledger; -1 when absent
+    int sourceSlot = -1;
+    int destinationSlot = -1;
 
     public Transaction(
             TransactionType transactionType,
@@ -22,13 +29,53 @@ public class Transaction {
             String description,
             Account sourceAccount,
             Account destinationAccount) {
+        this(Ids.next(), LocalDateTime.now(), transactionType, amount, description, sourceAccount,
+                destinationAccount);
+    }
+
+    // Rebuilds a persisted transaction with its original id and timestamp
+    public Transaction(
+            UUID id,
+            LocalDateTime dateTime,
+            TransactionType transactionType,
+            double amount,
+            String description,
+            Account sourceAccount,
+            Account destinationAccount) {
+        this(id, dateTime, transactionType, checkedMinorUnits(amount), description, sourceAccount,
+                destinationAccount);
+    }
+
+    /**
+     * Rebuilds a persisted transaction whose amount is already in minor units.
+     */
+    public static Transaction ofMinorUnits(
+            UUID id,
+            LocalDateTime dateTime,
+            TransactionType transactionType,
+            long amount,
+            String description,
+            Account sourceAccount,
+            Account destinationAccount) {
+        return new Transaction(id, dateTime, transactionType, amount, description, sourceAccount,
+                destinationAccount);
+    }
+
+    private Transaction(
+            UUID id,
+            LocalDateTime dateTime,
+            TransactionType transactionType,
+            long amount,
+            String description,
+            Account sourceAccount,
+            Account destinationAccount) {
 
         // Validation
         if (transactionType == null) {
             throw new InvalidTransactionException("creation", "Transaction type cannot be null");
         }
         if (amount <= 0) {
-            throw new NegativeAmountException(amount);
+            throw new NegativeAmountException(Money.toMajor(amount));
         }
         if (sourceAccount == null) {
             throw new AccountNotFoundException("Source account cannot be null");
@@ -43,11 +90,11 @@ public class Transaction {
             throw new InvalidTransactionException("transfer", "Cannot transfer to the same account");
         }
 
-        this.id = UUID.randomUUID();
+        this.id = id;
         this.transactionType = transactionType;
         this.amount = amount;
-        this.dateTime = LocalDateTime.now();
-        this.description = description.trim();
+        this.dateTime = dateTime;
+        this.description = Description.of(description.trim());
         this.sourceAccount = sourceAccount;
         this.destinationAccount = destinationAccount;
     }
@@ -61,6 +108,10 @@ public class Transaction {
     }
 
     public double getAmount() {
+        return Money.toMajor(amount);
+    }
+
+    public long getAmountMinorUnits() {
         return amount;
     }
 
@@ -68,6 +119,16 @@ public class Transaction {
         return dateTime;
     }
 
+    // Milliseconds since the epoch at UTC, computed without allocating
+    public long getEpochMillis() {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1000 + dateTime.getNano() / 1_000_000;
+    }
+
+    // Nanoseconds since the epoch at UTC, the same zone the journal uses; the key time indexes sort by
+    public static long epochNanos(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + dateTime.getNano();
+    }
+
     // Keep getDate() for backward compatibility, returns LocalDate part
     public java.time.LocalDate getDate() {
         return dateTime.toLocalDate();
@@ -88,7 +149,20 @@ public class Transaction {
         return dateTime.format(DateTimeFormatter.ofPattern("HH:mm:ss"));
     }
 
+    // Rejects non-positive amounts before rounding to minor units
+    private static long checkedMinorUnits(double amount) {
+        if (amount <= 0) {
+            throw new NegativeAmountException(amount);
+        }
+        return Money.ofMajor(amount);
+    }
+
     public String getDescription() {
+        return description.getText();
+    }
+
+    // The interned entry, for case-insensitive keyword searches
+    public Description getDescriptionEntry() {
         return description;
     }
 
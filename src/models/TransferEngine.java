@@ -0,0 +1,162 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Applies postings to account balances. Every account involved is locked in
+ * id order, so two transfers between the same pair of accounts in opposite
+ * directions cannot deadlock, and postings on disjoint accounts never wait
+ * for each other here. Funds are checked and both legs are computed before
+ * anything changes, so a transfer is applied whole or not at all.
+ *
+ * Lock order: account locks first, then any repository lock.
+ */
+public final class TransferEngine {
+
+    private static final Comparator<Account> BY_ID = Comparator.comparing(Account::getId);
+
+    private TransferEngine() {
+    }
+
+    /**
+     * Posts a transaction to its accounts. While the accounts are locked and
+     * the new balances are known to be valid, {@code record} runs (to write
+     * the ledger and journal); its result is returned. If it throws, no
+     * balance changes.
+     */
+    public static long post(Transaction t, LongSupplier record) {
+        Account source = t.getSourceAccount();
+        Account destination = t.getDestinationAccount();
+        if (source == destination) {
+            source.lock.lock();
+            try {
+                long balance = source.balanceAfter(t);
+                long result = record.getAsLong();
+                source.commit(t, balance);
+                return result;
+            } finally {
+                source.lock.unlock();
+            }
+        }
+
+        Account first = BY_ID.compare(source, destination) < 0 ? source : destination;
+        Account second = first == source ? destination : source;
+        first.lock.lock();
+        try {
+            second.lock.lock();
+            try {
+                long sourceBalance = source.balanceAfter(t);
+                long destinationBalance = destination.balanceAfter(t);
+                long result = record.getAsLong();
+                source.commit(t, sourceBalance);
+                destination.commit(t, destinationBalance);
+                return result;
+            } finally {
+                second.lock.unlock();
+            }
+        } finally {
+            first.lock.unlock();
+        }
+    }
+
+    /**
+     * Posts a batch with every involved account locked once, in id order.
+     * Postings are checked in batch order against the balances the earlier
+     * ones leave; one that fails is passed to {@code rejected} with its index
+     * and skipped. {@code record} then gets the accepted postings, and each
+     * account's balance and history are updated once. If {@code record}
+     * throws, no balance changes.
+     */
+    public static long postAll(List<Transaction> batch, ObjIntConsumer<RuntimeException> rejected,
+            ToLongFunction<List<Transaction>> record) {
+        Set<Account> involved = new LinkedHashSet<>();
+        for (Transaction t : batch) {
+            involved.add(t.getSourceAccount());
+            involved.add(t.getDestinationAccount());
+        }
+        return withAccountsLocked(involved, () -> {
+            Map<Account, PendingLegs> pending = new LinkedHashMap<>();
+            List<Transaction> accepted = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                Transaction t = batch.get(i);
+                PendingLegs source = pending.computeIfAbsent(t.getSourceAccount(), PendingLegs::new);
+                PendingLegs destination = pending.computeIfAbsent(t.getDestinationAccount(), PendingLegs::new);
+                try {
+                    long sourceBalance = source.account.balanceAfter(t, source.balance);
+                    long destinationBalance = destination == source ? sourceBalance
+                            : destination.account.balanceAfter(t, destination.balance);
+                    source.add(t, sourceBalance);
+                    if (destination != source) {
+                        destination.add(t, destinationBalance);
+                    }
+                    accepted.add(t);
+                } catch (RuntimeException e) {
+                    rejected.accept(e, i);
+                }
+            }
+
+            long result = record.applyAsLong(accepted);
+            for (PendingLegs legs : pending.values()) {
+                if (!legs.postings.isEmpty()) {
+                    legs.account.commitAll(legs.postings, legs.balances);
+                }
+            }
+            return result;
+        });
+    }
+
+    // One account's share of a batch: its postings and the balance after each
+    private static final class PendingLegs {
+        final Account account;
+        final List<Transaction> postings = new ArrayList<>();
+        long[] balances = new long[4];
+        long balance;
+
+        PendingLegs(Account account) {
+            this.account = account;
+            this.balance = account.getBalanceMinorUnits();
+        }
+
+        void add(Transaction t, long newBalance) {
+            if (postings.size() == balances.length) {
+                balances = Arrays.copyOf(balances, balances.length * 2);
+            }
+            balances[postings.size()] = newBalance;
+            postings.add(t);
+            balance = newBalance;
+        }
+    }
+
+    /**
+     * Runs an action while no posting is in flight on any of the given
+     * accounts, taking their locks in id order.
+     */
+    public static <T> T withAccountsLocked(Collection<Account> accounts, Supplier<T> action) {
+        List<Account> ordered = new ArrayList<>(accounts);
+        ordered.sort(BY_ID);
+        int locked = 0;
+        try {
+            for (Account a : ordered) {
+                a.lock.lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                ordered.get(i).lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package persistence;
+
+/**
+ * Decides when appended journal records are forced to disk.
+ */
+public final class FlushPolicy {
+
+    public enum Mode {
+        // Every append waits until it is durable; concurrent appends share one force()
+        PER_WRITE,
+        // A background flusher forces the journal every N milliseconds
+        INTERVAL,
+        // A background flusher forces the journal once N records are pending
+        RECORDS
+    }
+
+    private final Mode mode;
+    private final long value;
+
+    private FlushPolicy(Mode mode, long value) {
+        this.mode = mode;
+        this.value = value;
+    }
+
+    public static FlushPolicy perWrite() {
+        return new FlushPolicy(Mode.PER_WRITE, 0);
+    }
+
+    public static FlushPolicy everyMillis(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Flush interval must be positive: " + millis);
+        }
+        return new FlushPolicy(Mode.INTERVAL, millis);
+    }
+
+    public static FlushPolicy everyRecords(int records) {
+        if (records <= 0) {
+            throw new IllegalArgumentException("Flush record count must be positive: " + records);
+        }
+        return new FlushPolicy(Mode.RECORDS, records);
+    }
+
+    /**
+     * Parses "per-write", "interval:&lt;ms&gt;" or "records:&lt;n&gt;".
+     */
+    public static FlushPolicy parse(String spec) {
+        String s = spec.trim().toLowerCase();
+        try {
+            if (s.equals("per-write")) {
+                return perWrite();
+            }
+            if (s.startsWith("interval:")) {
+                return everyMillis(Long.parseLong(s.substring("interval:".length())));
+            }
+            if (s.startsWith("records:")) {
+                return everyRecords(Integer.parseInt(s.substring("records:".length())));
+            }
+        } catch (NumberFormatException e) {
+            // fall through to the error below
+        }
+        throw new IllegalArgumentException("Unknown journal flush policy: " + spec);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        switch (mode) {
+            case INTERVAL:
+                return "interval:" + value;
+            case RECORDS:
+                return "records:" + value;
+            default:
+                return "per-write";
+        }
+    }
+}
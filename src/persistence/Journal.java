@@ -0,0 +1,398 @@
+package persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+import models.Account;
+import models.Customer;
+import models.Transaction;
+import utils.Console;
+
+/**
+ * Append-only binary journal of ledger mutations.
+ *
+ * The header carries a random generation id, fixed when the file is created,
+ * so a snapshot can tell whether its journal offset refers to this file.
+ *
+ * Records are framed as [length][crc32][body] and written through a single
+ * FileChannel. Appends only reach the OS page cache; a background flusher
+ * thread forces them to disk according to the configured {@link FlushPolicy},
+ * so one force() covers every record appended since the previous one.
+ *
+ * Repositories append while holding their own write lock and before they
+ * change anything in memory, which keeps the journal order equal to the
+ * order mutations were applied and lets a failed append leave no trace.
+ * They wait for durability with {@link #awaitDurable(long)} after releasing
+ * the lock.
+ *
+ * A failed write or flush breaks the journal: records not yet known to be on
+ * disk are never reported durable, waiters get the failure, and every later
+ * append is refused until the journal is reopened.
+ */
+public final class Journal implements Closeable {
+
+    static final int MAGIC = 0x424A4E4C; // "BJNL"
+    static final int VERSION = 3;
+    // Magic, version and generation
+    static final int HEADER_SIZE = 16;
+    static final int FRAME_OVERHEAD = 8;
+
+    private static final Journal DISABLED = new Journal();
+    private static volatile Journal instance = DISABLED;
+
+    private final FileChannel channel;
+    private final long generation;
+    private final FlushPolicy flushPolicy;
+    private final Thread flusher;
+    private final Object monitor = new Object();
+    private final CRC32 crc = new CRC32();
+
+    // All guarded by monitor
+    private long appendedSeq;
+    private long durableSeq;
+    private boolean closed;
+    // First write or flush failure; once set the journal is broken
+    private IOException failure;
+
+    private Journal() {
+        this.channel = null;
+        this.generation = 0;
+        this.flushPolicy = null;
+        this.flusher = null;
+    }
+
+    private Journal(FileChannel channel, long generation, FlushPolicy flushPolicy) {
+        this.channel = channel;
+        this.generation = generation;
+        this.flushPolicy = flushPolicy;
+        this.flusher = new Thread(this::runFlusher, "journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * The journal repositories write to. Until one is installed this is a
+     * disabled journal whose appends are no-ops.
+     */
+    public static Journal getInstance() {
+        return instance;
+    }
+
+    public static void install(Journal journal) {
+        instance = journal == null ? DISABLED : journal;
+    }
+
+    /**
+     * Opens the journal for appending. Anything past {@code validLength} (a torn
+     * tail left by a crash, as reported by {@link JournalReader}) is truncated.
+     * A journal with no intact header is started over under a new generation.
+     */
+    public static Journal open(Path path, FlushPolicy flushPolicy, long validLength) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long generation;
+        if (validLength < HEADER_SIZE) {
+            generation = newGeneration();
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(generation).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+        } else {
+            generation = JournalReader.generation(path);
+            if (channel.size() > validLength) {
+                channel.truncate(validLength);
+            }
+        }
+        channel.position(channel.size());
+        return new Journal(channel, generation, flushPolicy);
+    }
+
+    // Random and never 0, which stands for "no journal"
+    private static long newGeneration() {
+        long generation;
+        do {
+            generation = new SecureRandom().nextLong();
+        } while (generation == 0);
+        return generation;
+    }
+
+    public boolean isEnabled() {
+        return channel != null;
+    }
+
+    public FlushPolicy getFlushPolicy() {
+        return flushPolicy;
+    }
+
+    // Generation id from the header, 0 when disabled
+    public long getGeneration() {
+        return generation;
+    }
+
+    // Record helpers; each returns the sequence number to pass to awaitDurable
+
+    public long customerCreated(Customer c) {
+        return isEnabled() ? append(JournalCodec.customerCreated(c)) : 0;
+    }
+
+    public long customerDeleted(Customer c) {
+        return isEnabled() ? append(JournalCodec.customerDeleted(c)) : 0;
+    }
+
+    public long customerEmailChanged(Customer c) {
+        return isEnabled() ? append(JournalCodec.customerEmailChanged(c)) : 0;
+    }
+
+    public long accountCreated(Account a) {
+        return isEnabled() ? append(JournalCodec.accountCreated(a)) : 0;
+    }
+
+    public long accountDeleted(Account a) {
+        return isEnabled() ? append(JournalCodec.accountDeleted(a)) : 0;
+    }
+
+    public long transactionPosted(Transaction t) {
+        return isEnabled() ? append(JournalCodec.transactionPosted(t)) : 0;
+    }
+
+    public long transactionDeleted(Transaction t) {
+        return isEnabled() ? append(JournalCodec.transactionDeleted(t)) : 0;
+    }
+
+    public long transactionReversed(Transaction original, Transaction reversal) {
+        return isEnabled() ? append(JournalCodec.transactionReversed(original, reversal)) : 0;
+    }
+
+    // Batch helpers write every record or none; each returns the last record's sequence number
+
+    public long customersDeleted(List<Customer> customers) {
+        return isEnabled() ? append(encodeAll(customers, JournalCodec::customerDeleted)) : 0;
+    }
+
+    public long accountsDeleted(List<Account> accounts) {
+        return isEnabled() ? append(encodeAll(accounts, JournalCodec::accountDeleted)) : 0;
+    }
+
+    public long transactionsPosted(List<Transaction> transactions) {
+        return isEnabled() ? append(encodeAll(transactions, JournalCodec::transactionPosted)) : 0;
+    }
+
+    public long transactionsDeleted(List<Transaction> transactions) {
+        return isEnabled() ? append(encodeAll(transactions, JournalCodec::transactionDeleted)) : 0;
+    }
+
+    /**
+     * Blocks until the record with the given sequence number is on disk. Only
+     * the per-write policy waits; the batching policies trade that guarantee
+     * for throughput.
+     *
+     * @throws UncheckedIOException if the journal broke before the record was
+     *         forced to disk
+     */
+    public void awaitDurable(long seq) {
+        if (!isEnabled() || seq <= 0 || flushPolicy.getMode() != FlushPolicy.Mode.PER_WRITE) {
+            return;
+        }
+        synchronized (monitor) {
+            while (durableSeq < seq && !closed && failure == null) {
+                try {
+                    monitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (durableSeq < seq && failure != null) {
+                throw new UncheckedIOException("Journal record " + seq + " may not be on disk", failure);
+            }
+        }
+    }
+
+    /**
+     * Current end of the journal in bytes, as seen by appends made so far.
+     */
+    public long position() {
+        if (!isEnabled()) {
+            return 0;
+        }
+        synchronized (monitor) {
+            try {
+                return channel.position();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (monitor) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            monitor.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.force(true);
+        channel.close();
+    }
+
+    private static <T> ByteBuffer[] encodeAll(List<T> items, Function<T, ByteBuffer> encoder) {
+        ByteBuffer[] bodies = new ByteBuffer[items.size()];
+        for (int i = 0; i < bodies.length; i++) {
+            bodies[i] = encoder.apply(items.get(i));
+        }
+        return bodies;
+    }
+
+    // Frames the records and writes them in one go, so a failure leaves none of them behind
+    private long append(ByteBuffer... bodies) {
+        int size = 0;
+        for (ByteBuffer body : bodies) {
+            size += FRAME_OVERHEAD + body.remaining();
+        }
+        ByteBuffer frame = ByteBuffer.allocate(size);
+        synchronized (monitor) {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            if (failure != null) {
+                throw new UncheckedIOException("Journal is broken until reopened", failure);
+            }
+            if (bodies.length == 0) {
+                return 0;
+            }
+            for (ByteBuffer body : bodies) {
+                crc.reset();
+                crc.update(body.duplicate());
+                frame.putInt(body.remaining()).putInt((int) crc.getValue()).put(body);
+            }
+            frame.flip();
+            long start = -1;
+            try {
+                start = channel.position();
+                while (frame.hasRemaining()) {
+                    channel.write(frame);
+                }
+            } catch (IOException e) {
+                discardPartialFrame(start, e);
+                throw new UncheckedIOException("Journal append failed", e);
+            }
+            appendedSeq += bodies.length;
+            monitor.notifyAll();
+            return appendedSeq;
+        }
+    }
+
+    private void runFlusher() {
+        while (true) {
+            long target;
+            boolean stopping;
+            synchronized (monitor) {
+                try {
+                    waitForFlushCondition();
+                } catch (InterruptedException e) {
+                    closed = true;
+                }
+                stopping = closed;
+                target = appendedSeq;
+                if (target == durableSeq) {
+                    if (stopping) {
+                        return;
+                    }
+                    continue;
+                }
+            }
+
+            try {
+                // Everything written before this call is covered, so one force
+                // completes every append up to target
+                channel.force(false);
+            } catch (IOException e) {
+                // Nothing since the last good force is known to be on disk
+                Console.error("Journal flush failed: " + e.getMessage());
+                synchronized (monitor) {
+                    failure = e;
+                    monitor.notifyAll();
+                }
+                return;
+            }
+
+            synchronized (monitor) {
+                durableSeq = Math.max(durableSeq, target);
+                monitor.notifyAll();
+                if (stopping && durableSeq == appendedSeq) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Cuts a partly written frame off the end so the next append does not land
+     * after it. If that fails too, or the start is unknown, the journal is
+     * marked broken instead. Called with monitor held.
+     */
+    private void discardPartialFrame(long start, IOException cause) {
+        if (start >= 0) {
+            try {
+                channel.truncate(start);
+                channel.position(start);
+                return;
+            } catch (IOException e) {
+                cause.addSuppressed(e);
+            }
+        }
+        failure = cause;
+        monitor.notifyAll();
+    }
+
+    // Called with monitor held
+    private void waitForFlushCondition() throws InterruptedException {
+        switch (flushPolicy.getMode()) {
+            case INTERVAL:
+                // Appends notify the monitor, so wait out the full interval
+                long deadline = System.currentTimeMillis() + flushPolicy.getValue();
+                long remaining = flushPolicy.getValue();
+                while (!closed && remaining > 0) {
+                    monitor.wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+                break;
+            case RECORDS:
+                while (!closed && appendedSeq - durableSeq < flushPolicy.getValue()) {
+                    monitor.wait();
+                }
+                break;
+            default:
+                while (!closed && appendedSeq == durableSeq) {
+                    monitor.wait();
+                }
+                break;
+        }
+    }
+}
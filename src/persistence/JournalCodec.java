@@ -0,0 +1,146 @@
+package persistence;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import models.Account;
+import models.Customer;
+import models.Transaction;
+
+/**
+ * Binary encoding of journal record bodies. Every body starts with a one-byte
+ * record type followed by that record's fields.
+ */
+final class JournalCodec {
+
+    static final byte CUSTOMER_CREATED = 1;
+    static final byte CUSTOMER_DELETED = 2;
+    static final byte CUSTOMER_EMAIL_CHANGED = 3;
+    static final byte ACCOUNT_CREATED = 4;
+    static final byte ACCOUNT_DELETED = 5;
+    static final byte TRANSACTION_POSTED = 6;
+    static final byte TRANSACTION_DELETED = 7;
+    static final byte TRANSACTION_REVERSED = 8;
+
+    // type + id + source id + destination id + amount + epoch second + nanos + description length
+    static final int TRANSACTION_FIXED_SIZE = 1 + 16 + 16 + 16 + 8 + 8 + 4 + 4;
+
+    private JournalCodec() {
+    }
+
+    static ByteBuffer customerCreated(Customer c) {
+        byte[] firstName = utf8(c.getFirstName());
+        byte[] lastName = utf8(c.getLastName());
+        byte[] email = utf8(c.getEmail());
+        byte[] password = utf8(c.getPassword());
+        ByteBuffer b = ByteBuffer.allocate(1 + 16 + 1 + 16
+                + firstName.length + lastName.length + email.length + password.length);
+        b.put(CUSTOMER_CREATED);
+        putUuid(b, c.getId());
+        b.put((byte) c.getUserType().ordinal());
+        putBytes(b, firstName);
+        putBytes(b, lastName);
+        putBytes(b, email);
+        putBytes(b, password);
+        return b.flip();
+    }
+
+    static ByteBuffer customerDeleted(Customer c) {
+        return idRecord(CUSTOMER_DELETED, c.getId());
+    }
+
+    static ByteBuffer customerEmailChanged(Customer c) {
+        byte[] email = utf8(c.getEmail());
+        ByteBuffer b = ByteBuffer.allocate(1 + 16 + 4 + email.length);
+        b.put(CUSTOMER_EMAIL_CHANGED);
+        putUuid(b, c.getId());
+        putBytes(b, email);
+        return b.flip();
+    }
+
+    static ByteBuffer accountCreated(Account a) {
+        ByteBuffer b = ByteBuffer.allocate(1 + 16 + 16 + 1);
+        b.put(ACCOUNT_CREATED);
+        putUuid(b, a.getId());
+        putUuid(b, a.getCustomer().getId());
+        b.put((byte) a.getAccountType().ordinal());
+        return b.flip();
+    }
+
+    static ByteBuffer accountDeleted(Account a) {
+        return idRecord(ACCOUNT_DELETED, a.getId());
+    }
+
+    static ByteBuffer transactionPosted(Transaction t) {
+        byte[] description = utf8(t.getDescription());
+        ByteBuffer b = ByteBuffer.allocate(1 + TRANSACTION_FIXED_SIZE + description.length);
+        b.put(TRANSACTION_POSTED);
+        putTransaction(b, t, description);
+        return b.flip();
+    }
+
+    static ByteBuffer transactionDeleted(Transaction t) {
+        return idRecord(TRANSACTION_DELETED, t.getId());
+    }
+
+    static ByteBuffer transactionReversed(Transaction original, Transaction reversal) {
+        byte[] description = utf8(reversal.getDescription());
+        ByteBuffer b = ByteBuffer.allocate(1 + 16 + TRANSACTION_FIXED_SIZE + description.length);
+        b.put(TRANSACTION_REVERSED);
+        putUuid(b, original.getId());
+        putTransaction(b, reversal, description);
+        return b.flip();
+    }
+
+    // Field helpers shared with the reader side
+
+    static void putUuid(ByteBuffer b, UUID id) {
+        b.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+    }
+
+    static UUID getUuid(ByteBuffer b) {
+        return new UUID(b.getLong(), b.getLong());
+    }
+
+    static String getString(ByteBuffer b) {
+        byte[] bytes = new byte[b.getInt()];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static LocalDateTime getDateTime(ByteBuffer b) {
+        long epochSecond = b.getLong();
+        int nanos = b.getInt();
+        return LocalDateTime.ofEpochSecond(epochSecond, nanos, ZoneOffset.UTC);
+    }
+
+    static void putTransaction(ByteBuffer b, Transaction t, byte[] description) {
+        b.put((byte) t.getTransactionType().ordinal());
+        putUuid(b, t.getId());
+        putUuid(b, t.getSourceAccount().getId());
+        putUuid(b, t.getDestinationAccount().getId());
+        b.putLong(t.getAmountMinorUnits());
+        // LocalDateTime carries no zone; UTC is only used as a fixed reference so it round-trips exactly
+        b.putLong(t.getDateTime().toEpochSecond(ZoneOffset.UTC));
+        b.putInt(t.getDateTime().getNano());
+        putBytes(b, description);
+    }
+
+    private static ByteBuffer idRecord(byte type, UUID id) {
+        ByteBuffer b = ByteBuffer.allocate(1 + 16);
+        b.put(type);
+        putUuid(b, id);
+        return b.flip();
+    }
+
+    static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static void putBytes(ByteBuffer b, byte[] bytes) {
+        b.putInt(bytes.length).put(bytes);
+    }
+}
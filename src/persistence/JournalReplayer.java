@@ -0,0 +1,159 @@
+package persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import models.Account;
+import models.AccountType;
+import models.Customer;
+import models.Transaction;
+import models.TransactionType;
+import models.UserType;
+import repositories.AccountRepository;
+import repositories.CustomerRepository;
+import repositories.TransactionRepository;
+import utils.Console;
+
+/**
+ * Rebuilds repository state by applying journal records through the
+ * repositories. Records are idempotent by id, so replaying a record whose
+ * effect is already present is a no-op.
+ */
+final class JournalReplayer {
+    private final CustomerRepository customerRepository;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private int applied;
+    private int failed;
+
+    JournalReplayer() {
+        this.customerRepository = CustomerRepository.getInstance();
+        this.accountRepository = AccountRepository.getInstance();
+        this.transactionRepository = TransactionRepository.getInstance();
+    }
+
+    /**
+     * @return the byte length of the intact prefix of the journal
+     */
+    long replay(Path path, long fromOffset) throws IOException {
+        return JournalReader.read(path, fromOffset, this::apply);
+    }
+
+    int getApplied() {
+        return applied;
+    }
+
+    int getFailed() {
+        return failed;
+    }
+
+    private void apply(ByteBuffer body) {
+        byte type = body.get();
+        try {
+            switch (type) {
+                case JournalCodec.CUSTOMER_CREATED:
+                    applyCustomerCreated(body);
+                    break;
+                case JournalCodec.CUSTOMER_DELETED:
+                    customerRepository.delete("id", JournalCodec.getUuid(body).toString());
+                    break;
+                case JournalCodec.CUSTOMER_EMAIL_CHANGED:
+                    applyEmailChanged(body);
+                    break;
+                case JournalCodec.ACCOUNT_CREATED:
+                    applyAccountCreated(body);
+                    break;
+                case JournalCodec.ACCOUNT_DELETED:
+                    accountRepository.delete("id", JournalCodec.getUuid(body).toString());
+                    break;
+                case JournalCodec.TRANSACTION_POSTED:
+                    applyTransactionPosted(body);
+                    break;
+                case JournalCodec.TRANSACTION_DELETED:
+                    transactionRepository.delete("id", JournalCodec.getUuid(body).toString());
+                    break;
+                case JournalCodec.TRANSACTION_REVERSED:
+                    applyTransactionReversed(body);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown journal record type " + type);
+            }
+            applied++;
+        } catch (RuntimeException e) {
+            failed++;
+            Console.warning("Skipped journal record of type " + type + ": " + e.getMessage());
+        }
+    }
+
+    private void applyCustomerCreated(ByteBuffer b) {
+        UUID id = JournalCodec.getUuid(b);
+        UserType userType = UserType.values()[b.get()];
+        String firstName = JournalCodec.getString(b);
+        String lastName = JournalCodec.getString(b);
+        String email = JournalCodec.getString(b);
+        String password = JournalCodec.getString(b);
+        if (customerRepository.findById(id).isPresent()) {
+            return;
+        }
+        customerRepository.save(new Customer(id, firstName, lastName, email, password, userType));
+    }
+
+    private void applyEmailChanged(ByteBuffer b) {
+        UUID id = JournalCodec.getUuid(b);
+        String email = JournalCodec.getString(b);
+        customerRepository.findById(id).ifPresent(c -> customerRepository.updateEmail(c, email));
+    }
+
+    private void applyAccountCreated(ByteBuffer b) {
+        UUID id = JournalCodec.getUuid(b);
+        UUID customerId = JournalCodec.getUuid(b);
+        AccountType accountType = AccountType.values()[b.get()];
+        if (accountRepository.findById(id).isPresent()) {
+            return;
+        }
+        Customer customer = customerRepository.findById(customerId)
+                .orElseThrow(() -> new IllegalStateException("Unknown customer " + customerId));
+        accountRepository.save(new Account(id, accountType, customer));
+    }
+
+    private void applyTransactionPosted(ByteBuffer b) {
+        Optional<Transaction> transaction = readTransaction(b);
+        if (transaction.isPresent()) {
+            transactionRepository.save(transaction.get());
+        }
+    }
+
+    private void applyTransactionReversed(ByteBuffer b) {
+        UUID originalId = JournalCodec.getUuid(b);
+        Optional<Transaction> reversal = readTransaction(b);
+        Optional<Transaction> original = transactionRepository.findById(originalId);
+        if (reversal.isPresent() && original.isPresent()) {
+            transactionRepository.reverse(original.get(), reversal.get());
+        }
+    }
+
+    // Empty when the transaction is already in the repository
+    private Optional<Transaction> readTransaction(ByteBuffer b) {
+        TransactionType type = TransactionType.values()[b.get()];
+        UUID id = JournalCodec.getUuid(b);
+        UUID sourceId = JournalCodec.getUuid(b);
+        UUID destinationId = JournalCodec.getUuid(b);
+        long amount = b.getLong();
+        LocalDateTime dateTime = JournalCodec.getDateTime(b);
+        String description = JournalCodec.getString(b);
+        if (transactionRepository.findById(id).isPresent()) {
+            return Optional.empty();
+        }
+        return Optional.of(Transaction.ofMinorUnits(id, dateTime, type, amount, description,
+                findAccount(sourceId), findAccount(destinationId)));
+    }
+
+    private Account findAccount(UUID id) {
+        return accountRepository.findById(id)
+                .orElseThrow(() -> new IllegalStateException("Unknown account " + id));
+    }
+}
@@ -0,0 +1,132 @@
+package persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import utils.Console;
+
+/**
+ * Startup wiring for the on-disk journal and snapshots.
+ *
+ * Configured through system properties:
+ * bank.journal.enabled (default true), bank.journal.path (default
+ * data/bank.journal), bank.journal.flush ("per-write", "interval:&lt;ms&gt;"
+ * or "records:&lt;n&gt;", default per-write), bank.snapshot.path (default
+ * data/bank.snapshot) and bank.snapshot.interval.seconds (default 300,
+ * 0 disables periodic snapshots).
+ */
+public final class Persistence {
+
+    private static long lastSnapshotOffset = -1;
+
+    private Persistence() {
+    }
+
+    /**
+     * Restores the latest snapshot, replays the journal written after it and
+     * then installs the journal so every further mutation is appended.
+     *
+     * @return true if existing state was restored, false if the ledger starts empty
+     */
+    public static boolean start() {
+        if (!Boolean.parseBoolean(System.getProperty("bank.journal.enabled", "true"))) {
+            return false;
+        }
+
+        Path path = Paths.get(System.getProperty("bank.journal.path", "data/bank.journal"));
+        Path snapshotPath = Paths.get(System.getProperty("bank.snapshot.path", "data/bank.snapshot"));
+        try {
+            FlushPolicy flushPolicy = FlushPolicy.parse(System.getProperty("bank.journal.flush", "per-write"));
+            long snapshotInterval = Long.parseLong(System.getProperty("bank.snapshot.interval.seconds", "300"));
+
+            long generation = JournalReader.generation(path);
+            long fromOffset = restoreSnapshot(snapshotPath, generation);
+            boolean restored = fromOffset > 0;
+
+            JournalReplayer replayer = new JournalReplayer();
+            long validLength = replayer.replay(path, fromOffset);
+            if (replayer.getApplied() > 0) {
+                Console.info("Restored " + replayer.getApplied() + " journal records from " + path);
+                restored = true;
+            }
+
+            Journal journal = Journal.open(path, flushPolicy, validLength);
+            Journal.install(journal);
+            lastSnapshotOffset = fromOffset;
+            if (fromOffset > 0 && (generation == 0 || validLength < fromOffset)) {
+                // The journal is new or lost the tail the snapshot covers, so the
+                // snapshot's offset no longer lines up with it; replace it now
+                lastSnapshotOffset = -1;
+                writeSnapshot(snapshotPath);
+            }
+
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "snapshot-writer");
+                t.setDaemon(true);
+                return t;
+            });
+            if (snapshotInterval > 0) {
+                scheduler.scheduleWithFixedDelay(() -> writeSnapshot(snapshotPath),
+                        snapshotInterval, snapshotInterval, TimeUnit.SECONDS);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                scheduler.shutdownNow();
+                writeSnapshot(snapshotPath);
+                close(journal);
+            }, "journal-shutdown"));
+            return restored;
+        } catch (IOException | IllegalArgumentException e) {
+            Console.error("Journal unavailable, running in memory only: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Captures the current state and writes it as the new snapshot, unless
+     * nothing was journaled since the previous one.
+     */
+    static synchronized void writeSnapshot(Path snapshotPath) {
+        try {
+            Snapshot snapshot = Snapshot.capture();
+            if (snapshot.getJournalOffset() == lastSnapshotOffset) {
+                return;
+            }
+            snapshot.write(snapshotPath);
+            lastSnapshotOffset = snapshot.getJournalOffset();
+        } catch (IOException | RuntimeException e) {
+            Console.error("Failed to write snapshot: " + e.getMessage());
+        }
+    }
+
+    // Returns the journal offset covered by the snapshot, 0 when there is none
+    private static long restoreSnapshot(Path snapshotPath, long journalGeneration) throws IOException {
+        if (!Files.exists(snapshotPath)) {
+            return 0;
+        }
+        long started = System.nanoTime();
+        long offset;
+        try {
+            offset = Snapshot.restore(snapshotPath, journalGeneration);
+        } catch (IOException e) {
+            // The image is verified before anything is loaded, so the full journal can take over
+            Console.warning("Ignoring unreadable snapshot, replaying the full journal: " + e.getMessage());
+            return 0;
+        }
+        Console.info(String.format("Restored snapshot %s in %d ms", snapshotPath,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)));
+        return offset;
+    }
+
+    private static void close(Journal journal) {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            Console.error("Failed to close journal: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import models.Account;
+import models.AccountType;
+import models.BalanceHistory;
+import models.Customer;
+import models.Transaction;
+import models.TransactionType;
+import models.TransferEngine;
+import models.UserType;
+import repositories.AccountRepository;
+import repositories.CustomerRepository;
+import repositories.RepositoryLocks;
+import repositories.TransactionRepository;
+
+/**
+ * Compact binary image of the whole ledger: customers, accounts with their
+ * balances, every transaction and each account's history. A snapshot records
+ * the journal offset it covers, and the generation of the journal that offset
+ * belongs to, so startup restores the snapshot and then replays only the
+ * journal tail written after it.
+ *
+ * Layout: header, customers, accounts, transactions (ledger rows first, then
+ * history-only rows), per-account history as indexes into the transaction
+ * table, per-account balance checkpoints, and a trailing CRC32 of everything
+ * before it.
+ */
+final class Snapshot {
+
+    static final int MAGIC = 0x42534E50; // "BSNP"
+    static final int VERSION = 4;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final long journalGeneration;
+    private final long journalOffset;
+    private final List<Customer> customers;
+    private final List<Account> accounts;
+    private final long[] balances;
+    private final List<Transaction> ledger;
+    private final List<List<Transaction>> histories;
+    private final List<BalanceHistory> balanceHistories;
+
+    private Snapshot(long journalGeneration, long journalOffset, List<Customer> customers,
+            List<Account> accounts, List<Transaction> ledger) {
+        this.journalGeneration = journalGeneration;
+        this.journalOffset = journalOffset;
+        this.customers = customers;
+        this.accounts = accounts;
+        this.ledger = ledger;
+        this.balances = new long[accounts.size()];
+        this.histories = new ArrayList<>(accounts.size());
+        this.balanceHistories = new ArrayList<>(accounts.size());
+        for (int i = 0; i < accounts.size(); i++) {
+            balances[i] = accounts.get(i).getBalanceMinorUnits();
+            histories.add(new ArrayList<>(accounts.get(i).getTransactions()));
+            balanceHistories.add(accounts.get(i).getBalanceHistory().copy());
+        }
+    }
+
+    /**
+     * Copies the current state while every account is locked and all
+     * repositories are read-locked, so no posting is half applied and the copy
+     * and the journal offset agree with each other. Retries if an account was
+     * opened while the locks were being taken.
+     */
+    static Snapshot capture() {
+        while (true) {
+            List<Account> known = AccountRepository.getInstance().all();
+            Snapshot snapshot = TransferEngine.withAccountsLocked(known,
+                    () -> RepositoryLocks.withAllReadLocks(() -> {
+                        List<Account> accounts = AccountRepository.getInstance().all();
+                        if (!new HashSet<>(known).containsAll(accounts)) {
+                            return null;
+                        }
+                        return new Snapshot(
+                                Journal.getInstance().getGeneration(),
+                                Journal.getInstance().position(),
+                                CustomerRepository.getInstance().all(),
+                                accounts,
+                                TransactionRepository.getInstance().all());
+                    }));
+            if (snapshot != null) {
+                return snapshot;
+            }
+        }
+    }
+
+    long getJournalOffset() {
+        return journalOffset;
+    }
+
+    int getTransactionCount() {
+        return ledger.size();
+    }
+
+    /**
+     * Writes the snapshot to a temporary file and atomically moves it into place.
+     */
+    void write(Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            BlockWriter out = new BlockWriter(channel);
+
+            out.ensure(32).putInt(MAGIC).putInt(VERSION).putLong(journalGeneration).putLong(journalOffset)
+                    .putLong(System.currentTimeMillis());
+
+            out.ensure(4).putInt(customers.size());
+            for (Customer c : customers) {
+                byte[] firstName = JournalCodec.utf8(c.getFirstName());
+                byte[] lastName = JournalCodec.utf8(c.getLastName());
+                byte[] email = JournalCodec.utf8(c.getEmail());
+                byte[] password = JournalCodec.utf8(c.getPassword());
+                ByteBuffer b = out.ensure(16 + 1 + 16
+                        + firstName.length + lastName.length + email.length + password.length);
+                JournalCodec.putUuid(b, c.getId());
+                b.put((byte) c.getUserType().ordinal());
+                JournalCodec.putBytes(b, firstName);
+                JournalCodec.putBytes(b, lastName);
+                JournalCodec.putBytes(b, email);
+                JournalCodec.putBytes(b, password);
+            }
+
+            out.ensure(4).putInt(accounts.size());
+            for (int i = 0; i < accounts.size(); i++) {
+                Account a = accounts.get(i);
+                ByteBuffer b = out.ensure(16 + 16 + 1 + 8);
+                JournalCodec.putUuid(b, a.getId());
+                JournalCodec.putUuid(b, a.getCustomer().getId());
+                b.put((byte) a.getAccountType().ordinal());
+                b.putLong(balances[i]);
+            }
+
+            // Transaction table: ledger rows, then rows that only survive in an account history
+            Map<UUID, Integer> rowOf = new HashMap<>(ledger.size() * 2);
+            List<Transaction> historyOnly = new ArrayList<>();
+            for (Transaction t : ledger) {
+                rowOf.put(t.getId(), rowOf.size());
+            }
+            for (List<Transaction> history : histories) {
+                for (Transaction t : history) {
+                    if (!rowOf.containsKey(t.getId())) {
+                        rowOf.put(t.getId(), rowOf.size());
+                        historyOnly.add(t);
+                    }
+                }
+            }
+
+            out.ensure(4).putInt(rowOf.size());
+            for (Transaction t : ledger) {
+                writeTransaction(out, t, true);
+            }
+            for (Transaction t : historyOnly) {
+                writeTransaction(out, t, false);
+            }
+
+            for (List<Transaction> history : histories) {
+                out.ensure(4).putInt(history.size());
+                for (Transaction t : history) {
+                    out.ensure(4).putInt(rowOf.get(t.getId()));
+                }
+            }
+
+            for (BalanceHistory checkpoints : balanceHistories) {
+                out.ensure(12).putLong(checkpoints.getOpeningBalance()).putInt(checkpoints.size());
+                checkpoints.forEach((time, balance) -> out.ensure(16).putLong(time).putLong(balance));
+            }
+
+            out.finish();
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps the snapshot file and loads it into the (empty) repositories. A
+     * snapshot taken against another journal generation is refused before
+     * anything is loaded, since its offset means nothing in this journal; a
+     * {@code journalGeneration} of 0 (no journal) accepts any.
+     *
+     * @return the journal offset the snapshot covers
+     */
+    static long restore(Path path, long journalGeneration) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot larger than 2GB cannot be mapped: " + path);
+            }
+            // Smallest image: 32-byte header, the three counts and the checksum
+            if (size < 48) {
+                throw new IOException("Snapshot truncated to " + size + " bytes: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            // Verify the whole image before touching any repository
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().limit((int) size - 4));
+            if ((int) crc.getValue() != buffer.getInt((int) size - 4)) {
+                throw new IOException("Snapshot checksum mismatch: " + path);
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Unsupported snapshot format: " + path);
+            }
+            long generation = buffer.getLong();
+            if (journalGeneration != 0 && generation != journalGeneration) {
+                throw new IOException("Snapshot was taken against another journal: " + path);
+            }
+            long journalOffset = buffer.getLong();
+            buffer.getLong(); // creation time, informational
+
+            CustomerRepository customerRepository = CustomerRepository.getInstance();
+            AccountRepository accountRepository = AccountRepository.getInstance();
+            TransactionRepository transactionRepository = TransactionRepository.getInstance();
+
+            int customerCount = buffer.getInt();
+            Map<UUID, Customer> customersById = new HashMap<>(customerCount * 2);
+            for (int i = 0; i < customerCount; i++) {
+                UUID id = JournalCodec.getUuid(buffer);
+                UserType userType = UserType.values()[buffer.get()];
+                Customer c = new Customer(id, JournalCodec.getString(buffer), JournalCodec.getString(buffer),
+                        JournalCodec.getString(buffer), JournalCodec.getString(buffer), userType);
+                customerRepository.save(c);
+                customersById.put(id, c);
+            }
+
+            int accountCount = buffer.getInt();
+            List<Account> accounts = new ArrayList<>(accountCount);
+            Map<UUID, Account> accountsById = new HashMap<>(accountCount * 2);
+            for (int i = 0; i < accountCount; i++) {
+                UUID id = JournalCodec.getUuid(buffer);
+                Customer owner = customersById.get(JournalCodec.getUuid(buffer));
+                AccountType accountType = AccountType.values()[buffer.get()];
+                Account a = new Account(id, accountType, owner, buffer.getLong());
+                accountRepository.save(a);
+                accounts.add(a);
+                accountsById.put(id, a);
+            }
+
+            int transactionCount = buffer.getInt();
+            Transaction[] table = new Transaction[transactionCount];
+            for (int i = 0; i < transactionCount; i++) {
+                boolean inLedger = buffer.get() != 0;
+                TransactionType type = TransactionType.values()[buffer.get()];
+                UUID id = JournalCodec.getUuid(buffer);
+                Account source = accountsById.get(JournalCodec.getUuid(buffer));
+                Account destination = accountsById.get(JournalCodec.getUuid(buffer));
+                long amount = buffer.getLong();
+                LocalDateTime dateTime = JournalCodec.getDateTime(buffer);
+                String description = JournalCodec.getString(buffer);
+                table[i] = Transaction.ofMinorUnits(id, dateTime, type, amount, description, source, destination);
+                if (inLedger) {
+                    transactionRepository.restore(table[i]);
+                }
+            }
+
+            for (Account a : accounts) {
+                int historySize = buffer.getInt();
+                for (int i = 0; i < historySize; i++) {
+                    a.restoreTransaction(table[buffer.getInt()]);
+                }
+            }
+
+            for (Account a : accounts) {
+                BalanceHistory checkpoints = a.restoreBalanceHistory(buffer.getLong());
+                int checkpointCount = buffer.getInt();
+                for (int i = 0; i < checkpointCount; i++) {
+                    checkpoints.restore(buffer.getLong(), buffer.getLong());
+                }
+            }
+            return journalOffset;
+        }
+    }
+
+    private static void writeTransaction(BlockWriter out, Transaction t, boolean inLedger) {
+        byte[] description = JournalCodec.utf8(t.getDescription());
+        ByteBuffer b = out.ensure(1 + JournalCodec.TRANSACTION_FIXED_SIZE + description.length);
+        b.put((byte) (inLedger ? 1 : 0));
+        JournalCodec.putTransaction(b, t, description);
+    }
+
+    /**
+     * Buffered channel writer that keeps a running CRC32 of what it writes.
+     */
+    private static final class BlockWriter {
+        private final FileChannel channel;
+        private final CRC32 crc = new CRC32();
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        BlockWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        // Returns the buffer with at least n bytes of room
+        ByteBuffer ensure(int n) {
+            if (buffer.remaining() < n) {
+                flush();
+                if (buffer.capacity() < n) {
+                    buffer = ByteBuffer.allocate(n);
+                }
+            }
+            return buffer;
+        }
+
+        void finish() {
+            flush();
+            buffer.putInt((int) crc.getValue()).flip();
+            drain();
+        }
+
+        private void flush() {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            drain();
+        }
+
+        private void drain() {
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+            buffer.clear();
+        }
+    }
+}
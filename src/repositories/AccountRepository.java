@@ -1,44 +1,117 @@
 package repositories;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import models.Account;
+import models.AccountType;
+import models.Customer;
+import models.TransferEngine;
+import persistence.Journal;
+import utils.Money;
 import exceptions.AccountNotFoundException;
 import exceptions.CustomerNotFoundException;
 import exceptions.InvalidTransactionException;
 
 public class AccountRepository implements RepositoryBase<Account> {
-    private static AccountRepository instance;
-    private ArrayList<Account> accounts;
+    private final ArrayList<Account> accounts;
+    private final Map<UUID, Account> accountsById;
+    // Customer id -> that customer's accounts, at most one per account type
+    private final Map<UUID, EnumMap<AccountType, Account>> accountsByCustomer;
+    private final CustomerRepository customerRepository;
+    // Guards the list and the per-customer index; id lookups go through the concurrent map
+    private final ReentrantReadWriteLock lock;
 
     private AccountRepository() {
         this.accounts = new ArrayList<>();
+        this.accountsById = new ConcurrentHashMap<>();
+        this.accountsByCustomer = new HashMap<>();
+        this.customerRepository = CustomerRepository.getInstance();
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    private static class Holder {
+        private static final AccountRepository INSTANCE = new AccountRepository();
     }
 
     public static AccountRepository getInstance() {
-        if (instance == null) {
-            instance = new AccountRepository();
-        }
-        return instance;
+        return Holder.INSTANCE;
     }
 
     @Override
     public ArrayList<Account> all() {
-        return accounts;
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(accounts);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
     public Optional<Account> findById(String value) {
-        return accounts.stream()
-                .filter(a -> a.getId().toString().equals(value))
-                .findFirst();
+        if (value == null) {
+            return Optional.empty();
+        }
+        try {
+            return findById(UUID.fromString(value.trim()));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
     }
 
+    public Optional<Account> findById(UUID id) {
+        return Optional.ofNullable(accountsById.get(id));
+    }
+
+    // Whether the account is still open; stable while the caller holds its lock, since delete takes it
+    boolean isOpen(Account a) {
+        return accountsById.containsKey(a.getId());
+    }
+
+    /**
+     * @deprecated returns only one of the customer's accounts; use {@link #findAllByCustomer(UUID)}
+     */
+    @Deprecated
     public Optional<Account> findAccountsByCustomer(Object customer) {
-        return accounts.stream()
-                .filter(a -> a.getCustomer().equals(customer))
-                .findFirst();
+        if (!(customer instanceof Customer)) {
+            return Optional.empty();
+        }
+        return findAllByCustomer(((Customer) customer).getId()).stream().findFirst();
+    }
+
+    public List<Account> findAllByCustomer(UUID customerId) {
+        lock.readLock().lock();
+        try {
+            EnumMap<AccountType, Account> owned = accountsByCustomer.get(customerId);
+            return owned == null ? new ArrayList<>() : new ArrayList<>(owned.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean hasAccountType(UUID customerId, AccountType accountType) {
+        lock.readLock().lock();
+        try {
+            EnumMap<AccountType, Account> owned = accountsByCustomer.get(customerId);
+            return owned != null && owned.containsKey(accountType);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
@@ -50,40 +123,183 @@ public class AccountRepository implements RepositoryBase<Account> {
             throw new CustomerNotFoundException("Account must have a customer");
         }
 
-        account.getCustomer().addAccount(account);
-        accounts.add(account);
+        Journal journal = Journal.getInstance();
+        long seq;
+        lock.writeLock().lock();
+        try {
+            if (hasAccountType(account.getCustomer().getId(), account.getAccountType())) {
+                throw new InvalidTransactionException("account creation",
+                        "Customer already has a " + account.getAccountType() + " account");
+            }
+
+            // Journal first, so a failed append leaves nothing behind
+            seq = journal.accountCreated(account);
+            account.getCustomer().addAccount(account);
+            accounts.add(account);
+            accountsById.put(account.getId(), account);
+            accountsByCustomer.computeIfAbsent(account.getCustomer().getId(), k -> new EnumMap<>(AccountType.class))
+                    .put(account.getAccountType(), account);
+            customerRepository.indexAccountOwner(account);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        journal.awaitDurable(seq);
     }
 
     @Override
-    public void delete(String field, String value) {
-        switch (field.toLowerCase()) {
-            case "id":
-                accounts.removeIf(a -> a.getId().toString().equals(value));
-                break;
-            case "accounttype":
-                accounts.removeIf(a -> a.getAccountType().toString().equalsIgnoreCase(value));
-                break;
-            case "balance":
-                accounts.removeIf(a -> a.getBalance() == Double.parseDouble(value));
-                break;
-            default:
-                break;
+    public DeleteResult delete(String field, String value) {
+        try {
+            switch (field.toLowerCase()) {
+                case "id":
+                    return deleteById(UUID.fromString(value.trim()));
+                case "customer":
+                    return deleteByCustomer(UUID.fromString(value.trim()));
+                case "accounttype":
+                    return deleteByAccountType(AccountType.valueOf(value.trim().toUpperCase()));
+                case "balance":
+                    return deleteByBalance(Money.parse(value));
+                default:
+                    return DeleteResult.none();
+            }
+        } catch (IllegalArgumentException e) {
+            return DeleteResult.none();
         }
     }
 
+    public DeleteResult deleteById(UUID id) {
+        return removeMatching(() -> {
+            Account a = accountsById.get(id);
+            return a == null ? List.<Account>of() : List.of(a);
+        }, a -> true);
+    }
+
+    public DeleteResult deleteByCustomer(UUID customerId) {
+        return removeMatching(() -> {
+            EnumMap<AccountType, Account> owned = accountsByCustomer.get(customerId);
+            return owned == null ? List.of() : new ArrayList<>(owned.values());
+        }, a -> true);
+    }
+
+    public DeleteResult deleteByAccountType(AccountType accountType) {
+        return removeMatching(() -> accounts, a -> a.getAccountType() == accountType);
+    }
+
+    public DeleteResult deleteByBalance(long balance) {
+        return removeMatching(() -> accounts, a -> a.getBalanceMinorUnits() == balance);
+    }
+
+    public DeleteResult deleteWhere(Predicate<Account> filter) {
+        return removeMatching(() -> accounts, filter);
+    }
+
     @Override
     public void delete(Account a) {
         if (a == null) {
             throw new AccountNotFoundException("Cannot delete null account");
         }
-        if (!accounts.contains(a)) {
-            throw new AccountNotFoundException("Account not found in repository");
-        }
-        if (!a.getTransactions().isEmpty()) {
-            throw new InvalidTransactionException("deletion", "Cannot delete account with existing transactions");
+
+        Journal journal = Journal.getInstance();
+        // The account lock keeps a posting from landing between the history check and the removal
+        long seq = TransferEngine.withAccountsLocked(List.of(a), () -> {
+            lock.writeLock().lock();
+            try {
+                if (!accountsById.containsKey(a.getId())) {
+                    throw new AccountNotFoundException("Account not found in repository");
+                }
+                if (!a.getTransactions().isEmpty()) {
+                    throw new InvalidTransactionException("deletion",
+                            "Cannot delete account with existing transactions");
+                }
+
+                long deleted = journal.accountDeleted(a);
+                accounts.remove(a);
+                unindex(a);
+                return deleted;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+        journal.awaitDurable(seq);
+    }
+
+    ReentrantReadWriteLock lock() {
+        return lock;
+    }
+
+    /**
+     * Removes the candidates that pass the filter. Candidates are resolved under
+     * the write lock, typically from an index; accounts that still hold
+     * transactions are kept, as in {@link #delete(Account)}.
+     *
+     * An account's history may only be judged empty with its lock held, and
+     * account locks come before the write lock. So the scan runs with the
+     * accounts locked that the previous attempt found empty; if others now
+     * look empty, the locks are released and the scan retried with those
+     * added.
+     */
+    private DeleteResult removeMatching(Supplier<Collection<Account>> candidates, Predicate<Account> filter) {
+        long started = System.nanoTime();
+        Journal journal = Journal.getInstance();
+        long[] seq = new long[1];
+        int[] skipped = new int[1];
+        List<Account> doomed = new ArrayList<>();
+        Set<Account> locked = new HashSet<>();
+        while (true) {
+            List<Account> missing = TransferEngine.withAccountsLocked(locked, () -> {
+                lock.writeLock().lock();
+                try {
+                    doomed.clear();
+                    skipped[0] = 0;
+                    List<Account> unlocked = new ArrayList<>();
+                    for (Account a : candidates.get()) {
+                        if (!filter.test(a)) {
+                            continue;
+                        }
+                        if (!a.getTransactions().isEmpty()) {
+                            skipped[0]++;
+                            continue;
+                        }
+                        if (!locked.contains(a)) {
+                            unlocked.add(a);
+                        }
+                        doomed.add(a);
+                    }
+                    if (!unlocked.isEmpty()) {
+                        return unlocked;
+                    }
+                    if (!doomed.isEmpty()) {
+                        seq[0] = journal.accountsDeleted(doomed);
+                        // One compaction pass over the list, whatever the number of matches
+                        Set<Account> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+                        removed.addAll(doomed);
+                        accounts.removeIf(removed::contains);
+                        for (Account a : doomed) {
+                            unindex(a);
+                        }
+                    }
+                    return null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+            if (missing == null) {
+                break;
+            }
+            locked.addAll(missing);
         }
+        journal.awaitDurable(seq[0]);
+        return new DeleteResult(doomed.size(), skipped[0], System.nanoTime() - started);
+    }
 
-        accounts.remove(a);
+    private void unindex(Account a) {
+        a.getCustomer().removeAccount(a);
+        accountsById.remove(a.getId());
+        UUID customerId = a.getCustomer().getId();
+        EnumMap<AccountType, Account> owned = accountsByCustomer.get(customerId);
+        if (owned != null && owned.remove(a.getAccountType(), a) && owned.isEmpty()) {
+            accountsByCustomer.remove(customerId);
+        }
+        customerRepository.unindexAccountOwner(a);
     }
 
 }
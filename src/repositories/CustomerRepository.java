@@ -1,50 +1,108 @@
 package repositories;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import models.Account;
 import models.Customer;
+import persistence.Journal;
 import exceptions.CustomerNotFoundException;
 import exceptions.InvalidTransactionException;
 
 public class CustomerRepository implements RepositoryBase<Customer> {
 
-    private static CustomerRepository instance;
-    private ArrayList<Customer> customers;
+    private final ArrayList<Customer> customers;
+    private final Map<UUID, Customer> customersById;
+    // Normalized email -> customer; putIfAbsent on this map is what makes emails unique
+    private final Map<String, Customer> customersByEmail;
+    // Account id -> owning customer, maintained by AccountRepository.save/delete
+    private final Map<UUID, Customer> customersByAccount;
+    // Guards the ordered list and keeps email re-keying atomic; lookups go through the concurrent maps
+    private final ReentrantReadWriteLock lock;
 
     private CustomerRepository() {
         this.customers = new ArrayList<>();
+        this.customersById = new ConcurrentHashMap<>();
+        this.customersByEmail = new ConcurrentHashMap<>();
+        this.customersByAccount = new ConcurrentHashMap<>();
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    private static class Holder {
+        private static final CustomerRepository INSTANCE = new CustomerRepository();
     }
 
     public static CustomerRepository getInstance() {
-        if (instance == null) {
-            instance = new CustomerRepository();
-        }
-        return instance;
+        return Holder.INSTANCE;
     }
 
     @Override
     public List<Customer> all() {
-        return customers;
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(customers);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
     public Optional<Customer> findById(String value) {
-        return customers.stream()
-                .filter(c -> c.getId().toString().equals(value))
-                .findFirst();
+        if (value == null) {
+            return Optional.empty();
+        }
+        try {
+            return findById(UUID.fromString(value.trim()));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    public Optional<Customer> findById(UUID id) {
+        return Optional.ofNullable(customersById.get(id));
     }
 
     public Optional<Customer> findCustomerByAccount(Account a) {
-        return customers.stream()
-                .filter(c -> c.getAccounts().contains(a))
-                .findFirst();
+        if (a == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(customersByAccount.get(a.getId()));
+    }
+
+    void indexAccountOwner(Account a) {
+        customersByAccount.put(a.getId(), a.getCustomer());
+    }
+
+    void unindexAccountOwner(Account a) {
+        customersByAccount.remove(a.getId());
     }
 
     @Override
     public void save(Customer customer) {
+        if (!saveIfEmailAbsent(customer)) {
+            throw new InvalidTransactionException("customer creation", "Email already registered");
+        }
+    }
+
+    /**
+     * Saves the customer unless another customer already owns the same
+     * (case-insensitive) email. The check and the claim are a single atomic step.
+     *
+     * @return true if the customer was saved, false if the email is taken
+     */
+    public boolean saveIfEmailAbsent(Customer customer) {
         if (customer == null) {
             throw new CustomerNotFoundException("Cannot save null customer");
         }
@@ -58,49 +116,198 @@ public class CustomerRepository implements RepositoryBase<Customer> {
             throw new InvalidTransactionException("customer creation", "Last name cannot be null or empty");
         }
 
-        customers.add(customer);
+        Journal journal = Journal.getInstance();
+        long seq;
+        lock.writeLock().lock();
+        try {
+            String key = normalizeEmail(customer.getEmail());
+            if (customersByEmail.containsKey(key)) {
+                return false;
+            }
+            // Journal first, so a failed append leaves nothing behind
+            seq = journal.customerCreated(customer);
+            customersByEmail.put(key, customer);
+            customers.add(customer);
+            customersById.put(customer.getId(), customer);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        journal.awaitDurable(seq);
+        return true;
+    }
+
+    /**
+     * Changes a customer's email and re-keys the email index. Emails must be
+     * changed through here rather than {@code Customer.setEmail} so lookups stay consistent.
+     *
+     * @return true if the email was changed, false if another customer already uses it
+     */
+    public boolean updateEmail(Customer customer, String newEmail) {
+        if (customer == null) {
+            throw new CustomerNotFoundException("Cannot update null customer");
+        }
+        if (newEmail == null || newEmail.trim().isEmpty()) {
+            throw new InvalidTransactionException("customer update", "Email cannot be null or empty");
+        }
+
+        Journal journal = Journal.getInstance();
+        long seq;
+        lock.writeLock().lock();
+        try {
+            String oldKey = normalizeEmail(customer.getEmail());
+            String newKey = normalizeEmail(newEmail);
+            Customer owner = customersByEmail.get(newKey);
+            if (owner != null && owner != customer) {
+                return false;
+            }
+            // The record carries the new email, so set it first and put it back if the append fails
+            String oldEmail = customer.getEmail();
+            customer.setEmail(newEmail.trim());
+            try {
+                seq = journal.customerEmailChanged(customer);
+            } catch (RuntimeException e) {
+                customer.setEmail(oldEmail);
+                throw e;
+            }
+            customersByEmail.put(newKey, customer);
+            if (!oldKey.equals(newKey)) {
+                customersByEmail.remove(oldKey, customer);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        journal.awaitDurable(seq);
+        return true;
     }
 
     @Override
-    public void delete(String field, String value) {
-
-        switch (field.toLowerCase()) {
-            case "id":
-                customers.removeIf(c -> c.getId().toString().equals(value));
-                break;
-            case "firstname":
-                customers.removeIf(c -> c.getFirstName().equalsIgnoreCase(value));
-                break;
-            case "lastname":
-                customers.removeIf(c -> c.getLastName().equalsIgnoreCase(value));
-                break;
-            case "email":
-                customers.removeIf(c -> c.getEmail().equalsIgnoreCase(value));
-                break;
-            default:
-                break;
+    public DeleteResult delete(String field, String value) {
+        try {
+            switch (field.toLowerCase()) {
+                case "id":
+                    return deleteById(UUID.fromString(value.trim()));
+                case "firstname":
+                    return deleteByFirstName(value);
+                case "lastname":
+                    return deleteByLastName(value);
+                case "email":
+                    return deleteByEmail(value);
+                default:
+                    return DeleteResult.none();
+            }
+        } catch (IllegalArgumentException e) {
+            return DeleteResult.none();
         }
     }
 
+    public DeleteResult deleteById(UUID id) {
+        return removeMatching(() -> single(customersById.get(id)), c -> true);
+    }
+
+    public DeleteResult deleteByEmail(String email) {
+        return removeMatching(() -> single(customersByEmail.get(normalizeEmail(email))), c -> true);
+    }
+
+    public DeleteResult deleteByFirstName(String firstName) {
+        return removeMatching(() -> customers, c -> c.getFirstName().equalsIgnoreCase(firstName));
+    }
+
+    public DeleteResult deleteByLastName(String lastName) {
+        return removeMatching(() -> customers, c -> c.getLastName().equalsIgnoreCase(lastName));
+    }
+
+    public DeleteResult deleteWhere(Predicate<Customer> filter) {
+        return removeMatching(() -> customers, filter);
+    }
+
     @Override
     public void delete(Customer c) {
         if (c == null) {
             throw new CustomerNotFoundException("Cannot delete null customer");
         }
-        if (!customers.contains(c)) {
-            throw new CustomerNotFoundException("Customer not found in repository");
+
+        Journal journal = Journal.getInstance();
+        long seq;
+        lock.writeLock().lock();
+        try {
+            if (!customersById.containsKey(c.getId())) {
+                throw new CustomerNotFoundException("Customer not found in repository");
+            }
+            if (!c.getAccounts().isEmpty()) {
+                throw new InvalidTransactionException("customer deletion", "Cannot delete customer with existing accounts");
+            }
+
+            seq = journal.customerDeleted(c);
+            customers.remove(c);
+            unindex(c);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        journal.awaitDurable(seq);
+    }
+
+    public Optional<Customer> findByEmail(String value) {
+        if (value == null) {
+            return Optional.empty();
         }
-        if (!c.getAccounts().isEmpty()) {
-            throw new InvalidTransactionException("customer deletion", "Cannot delete customer with existing accounts");
+        return Optional.ofNullable(customersByEmail.get(normalizeEmail(value)));
+    }
+
+    ReentrantReadWriteLock lock() {
+        return lock;
+    }
+
+    /**
+     * Removes the candidates that pass the filter. Candidates are resolved under
+     * the write lock, typically from an index; customers that still own
+     * accounts are kept, as in {@link #delete(Customer)}.
+     */
+    private DeleteResult removeMatching(Supplier<Collection<Customer>> candidates, Predicate<Customer> filter) {
+        long started = System.nanoTime();
+        Journal journal = Journal.getInstance();
+        long seq = 0;
+        int skipped = 0;
+        List<Customer> doomed = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            for (Customer c : candidates.get()) {
+                if (!filter.test(c)) {
+                    continue;
+                }
+                if (!c.getAccounts().isEmpty()) {
+                    skipped++;
+                    continue;
+                }
+                doomed.add(c);
+            }
+            if (!doomed.isEmpty()) {
+                seq = journal.customersDeleted(doomed);
+                // One compaction pass over the list, whatever the number of matches
+                Set<Customer> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+                removed.addAll(doomed);
+                customers.removeIf(removed::contains);
+                for (Customer c : doomed) {
+                    unindex(c);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
         }
+        journal.awaitDurable(seq);
+        return new DeleteResult(doomed.size(), skipped, System.nanoTime() - started);
+    }
 
-        customers.remove(c);
+    private static List<Customer> single(Customer c) {
+        return c == null ? List.of() : List.of(c);
     }
 
-    public Optional<Customer> findByEmail(String value) {
-        return customers.stream()
-                .filter(c -> c.getEmail().toString().equals(value))
-                .findFirst();
+    private void unindex(Customer c) {
+        customersById.remove(c.getId());
+        customersByEmail.remove(normalizeEmail(c.getEmail()), c);
+    }
+
+    private static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
     }
 
 }
@@ -0,0 +1,39 @@
+package repositories;
+
+/**
+ * Outcome of a bulk delete: rows removed, rows that matched but were kept
+ * because something still depends on them, and the time the delete took.
+ */
+public final class DeleteResult {
+    private final int removed;
+    private final int skipped;
+    private final long elapsedNanos;
+
+    DeleteResult(int removed, int skipped, long elapsedNanos) {
+        this.removed = removed;
+        this.skipped = skipped;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    // Result for a delete whose value could not match anything
+    static DeleteResult none() {
+        return new DeleteResult(0, 0, 0);
+    }
+
+    public int getRemoved() {
+        return removed;
+    }
+
+    public int getSkipped() {
+        return skipped;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("removed %d, skipped %d in %.3f ms", removed, skipped, elapsedNanos / 1e6);
+    }
+}
@@ -0,0 +1,160 @@
+package repositories;
+
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+import exceptions.InvalidTransactionException;
+import models.Transaction;
+import models.TransactionType;
+
+/**
+ * Idempotency keys of recent postings, each mapped to the posting's outcome.
+ * Bounded: past the capacity the oldest settled keys are dropped first; a
+ * settled key also expires a fixed time after its posting completed. A key
+ * whose posting is still in flight is never dropped or taken over, so
+ * retries waiting on it always see its outcome. Lookups are a single
+ * concurrent hash map get.
+ *
+ * Each key remembers what was posted under it (type, amount, accounts and
+ * description), and a key reused for a different posting is rejected rather
+ * than answered with the earlier, unrelated transaction.
+ *
+ * Keys are held in memory only, so they do not survive a restart.
+ */
+final class IdempotencyCache {
+
+    /**
+     * One claim on a key. The owner reports the outcome through
+     * {@link #complete} or {@link #abandon} on this entry, never by key, so
+     * it cannot settle a later claim on the same key.
+     */
+    static final class Entry {
+        final String key;
+        final CompletableFuture<Transaction> outcome = new CompletableFuture<>();
+        // Payload fingerprint; a retry gets a fresh id and time, so those are left out
+        private final TransactionType type;
+        private final long amount;
+        private final UUID source;
+        private final UUID destination;
+        private final String description;
+        // Set once settled; only meaningful while outcome is done
+        private volatile long expiresAt;
+
+        private Entry(String key, Transaction t) {
+            this.key = key;
+            this.type = t.getTransactionType();
+            this.amount = t.getAmountMinorUnits();
+            this.source = t.getSourceAccount().getId();
+            this.destination = t.getDestinationAccount().getId();
+            this.description = t.getDescription();
+        }
+
+        private boolean samePayload(Entry other) {
+            return type == other.type && amount == other.amount && source.equals(other.source)
+                    && destination.equals(other.destination) && Objects.equals(description, other.description);
+        }
+
+        private boolean expired(long now) {
+            return outcome.isDone() && expiresAt - now <= 0;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // Insertion order, for dropping the oldest keys
+    private final ConcurrentLinkedQueue<Entry> order = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock evicting = new ReentrantLock();
+    private final int capacity;
+    private final long ttlNanos;
+
+    IdempotencyCache(int capacity, long ttlNanos) {
+        if (capacity < 1 || ttlNanos <= 0) {
+            throw new IllegalArgumentException("Idempotency cache needs a positive capacity and time to live");
+        }
+        this.capacity = capacity;
+        this.ttlNanos = ttlNanos;
+    }
+
+    // A fresh, unregistered entry for posting the transaction under the key, to pass to claim
+    Entry entry(String key, Transaction transaction) {
+        return new Entry(key, transaction);
+    }
+
+    /**
+     * Claims the entry's key for a new posting. Returns the same entry when
+     * the caller now owns the key and must settle it with {@link #complete}
+     * or {@link #abandon}; otherwise returns the earlier entry for the key,
+     * whose outcome may still be in flight.
+     *
+     * @throws InvalidTransactionException if the key is held by a different posting
+     */
+    Entry claim(Entry mine) {
+        while (true) {
+            Entry earlier = entries.putIfAbsent(mine.key, mine);
+            if (earlier == null) {
+                break;
+            }
+            if (!earlier.expired(System.nanoTime())) {
+                if (!earlier.samePayload(mine)) {
+                    throw new InvalidTransactionException("idempotent",
+                            "Key " + mine.key + " was already used for a different posting");
+                }
+                return earlier;
+            }
+            // Expired, take it over unless someone else just did
+            if (entries.replace(mine.key, earlier, mine)) {
+                break;
+            }
+        }
+        order.add(mine);
+        evict(System.nanoTime());
+        return mine;
+    }
+
+    void complete(Entry entry, Transaction transaction) {
+        entry.expiresAt = System.nanoTime() + ttlNanos;
+        entry.outcome.complete(transaction);
+    }
+
+    // Frees the key, if this entry still holds it, so a retry can post again; waiters get the failure
+    void abandon(Entry entry, Throwable failure) {
+        entries.remove(entry.key, entry);
+        entry.outcome.completeExceptionally(failure);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Drops expired or abandoned keys from the head, then the oldest settled
+     * ones while over capacity. Stops at an entry still in flight, so the
+     * cache can briefly hold more than its capacity while postings are
+     * outstanding.
+     */
+    private void evict(long now) {
+        // One evictor at a time keeps peek and poll on the same entry; others skip
+        if (!evicting.tryLock()) {
+            return;
+        }
+        try {
+            Entry head;
+            while ((head = order.peek()) != null) {
+                boolean stale = entries.get(head.key) != head;
+                if (!stale && !head.outcome.isDone()) {
+                    break;
+                }
+                if (!stale && !head.expired(now) && entries.size() <= capacity) {
+                    break;
+                }
+                order.poll();
+                entries.remove(head.key, head);
+            }
+        } finally {
+            evicting.unlock();
+        }
+    }
+}
@@ -29,12 +29,14 @@ public interface RepositoryBase<T> {
     void save(T entity);
 
     /**
-     * Delete an entity from the repository by key/value.
+     * Delete every entity whose field matches the value. The value is parsed
+     * once into the field's type; a value that cannot be parsed matches nothing.
      * 
      * @param key   the field/property name
      * @param value the value to match for deletion
+     * @return how many entities were removed or kept, and how long it took
      */
-    void delete(String key, String value);
+    DeleteResult delete(String key, String value);
 
     /**
      * Delete an entity from the repository.
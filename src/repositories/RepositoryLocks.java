@@ -0,0 +1,34 @@
+package repositories;
+
+import java.util.function.Supplier;
+
+/**
+ * Runs an action while every repository is read-locked, so it observes one
+ * consistent state across customers, accounts and transactions.
+ */
+public final class RepositoryLocks {
+
+    private RepositoryLocks() {
+    }
+
+    public static <T> T withAllReadLocks(Supplier<T> action) {
+        // No mutation path holds one repository's lock while taking another's,
+        // so acquiring all three read locks cannot deadlock
+        CustomerRepository.getInstance().lock().readLock().lock();
+        try {
+            AccountRepository.getInstance().lock().readLock().lock();
+            try {
+                TransactionRepository.getInstance().lock().readLock().lock();
+                try {
+                    return action.get();
+                } finally {
+                    TransactionRepository.getInstance().lock().readLock().unlock();
+                }
+            } finally {
+                AccountRepository.getInstance().lock().readLock().unlock();
+            }
+        } finally {
+            CustomerRepository.getInstance().lock().readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package repositories;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Outcome of a batch save: postings applied, the reason each rejected one
+ * failed keyed by its position in the batch, and the time the batch took.
+ */
+public final class SaveResult {
+    private final int saved;
+    private final Map<Integer, String> failures;
+    private final long elapsedNanos;
+
+    SaveResult(int saved, Map<Integer, String> failures, long elapsedNanos) {
+        this.saved = saved;
+        this.failures = Collections.unmodifiableMap(failures);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getSaved() {
+        return saved;
+    }
+
+    // Batch position to failure reason, in batch order
+    public Map<Integer, String> getFailures() {
+        return failures;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("saved %d, failed %d in %.3f ms", saved, failures.size(), elapsedNanos / 1e6);
+    }
+}
@@ -0,0 +1,121 @@
+package repositories;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+import models.Transaction;
+
+/**
+ * Store rows sorted by transaction time, ties kept in posting order. Postings
+ * arrive almost in time order, so inserts are usually plain appends; range
+ * queries binary-search the window start and walk to its end, O(log n + k).
+ *
+ * Not thread-safe on its own, callers hold the repository lock.
+ */
+final class TimeIndex {
+    private long[] times = new long[8];
+    private int[] rows = new int[8];
+    private int size;
+
+    void add(LocalDateTime dateTime, int row) {
+        long time = Transaction.epochNanos(dateTime);
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            rows = Arrays.copyOf(rows, size * 2);
+        }
+        int at = size;
+        if (size > 0 && compare(size - 1, time, row) > 0) {
+            at = upperBound(time, row);
+            System.arraycopy(times, at, times, at + 1, size - at);
+            System.arraycopy(rows, at, rows, at + 1, size - at);
+        }
+        times[at] = time;
+        rows[at] = row;
+        size++;
+    }
+
+    void remove(LocalDateTime dateTime, int row) {
+        long time = Transaction.epochNanos(dateTime);
+        for (int i = lowerBound(time); i < size && times[i] == time; i++) {
+            if (rows[i] == row) {
+                System.arraycopy(times, i + 1, times, i, size - i - 1);
+                System.arraycopy(rows, i + 1, rows, i, size - i - 1);
+                size--;
+                return;
+            }
+        }
+    }
+
+    // Drops every listed row in a single compaction pass
+    void removeAll(BitSet removedRows) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!removedRows.get(rows[i])) {
+                times[kept] = times[i];
+                rows[kept] = rows[i];
+                kept++;
+            }
+        }
+        size = kept;
+    }
+
+    /**
+     * Visits the rows whose time falls in [from, to] in time order. A null
+     * bound leaves that side of the window open.
+     */
+    void forEachInRange(LocalDateTime from, LocalDateTime to, IntConsumer action) {
+        int i = from == null ? 0 : lowerBound(Transaction.epochNanos(from));
+        long end = to == null ? Long.MAX_VALUE : Transaction.epochNanos(to);
+        for (; i < size && times[i] <= end; i++) {
+            action.accept(rows[i]);
+        }
+    }
+
+    // Visits every row in time order
+    void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(rows[i]);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // First position whose time is >= the given time
+    private int lowerBound(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First position ordered after (time, row)
+    private int upperBound(long time, int row) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(mid, time, row) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compare(int i, long time, int row) {
+        int byTime = Long.compare(times[i], time);
+        return byTime != 0 ? byTime : Integer.compare(rows[i], row);
+    }
+}
@@ -1,49 +1,507 @@
 package repositories;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
 
 import models.Account;
 import models.Transaction;
+import models.TransactionType;
+import models.TransferEngine;
+import persistence.Journal;
+import utils.Money;
 import exceptions.AccountNotFoundException;
 import exceptions.InvalidTransactionException;
 
+/**
+ * Ledger of posted transactions. Rows live in a {@link TransactionStore},
+ * which owns the id index; the time indexes below refer to its rows.
+ */
 public class TransactionRepository implements RepositoryBase<Transaction> {
-    private static TransactionRepository instance;
-    private ArrayList<Transaction> transactions;
+    private final TransactionStore transactions;
+    // Time-ordered index over every row, for date-range queries
+    private final TimeIndex rowsByTime;
+    // Secondary index: account id -> rows touching that account, in time order
+    private final Map<UUID, TimeIndex> rowsByAccount;
+    // Guards the store and the indexes over it
+    private final ReentrantReadWriteLock lock;
+    // Recent idempotency keys, see save(Transaction, String)
+    private final IdempotencyCache idempotencyKeys;
 
     private TransactionRepository() {
-        transactions = new ArrayList<>();
+        transactions = new TransactionStore();
+        rowsByTime = new TimeIndex();
+        rowsByAccount = new HashMap<>();
+        lock = new ReentrantReadWriteLock();
+        idempotencyKeys = new IdempotencyCache(
+                Integer.getInteger("bank.idempotency.capacity", 1_000_000),
+                TimeUnit.SECONDS.toNanos(Long.getLong("bank.idempotency.ttl.seconds", 86_400)));
+    }
+
+    private static class Holder {
+        private static final TransactionRepository INSTANCE = new TransactionRepository();
     }
 
     public static TransactionRepository getInstance() {
-        if (instance == null) {
-            instance = new TransactionRepository();
-        }
-        return instance;
+        return Holder.INSTANCE;
     }
 
     @Override
     public ArrayList<Transaction> all() {
-        return transactions;
+        lock.readLock().lock();
+        try {
+            ArrayList<Transaction> all = new ArrayList<>(transactions.size());
+            for (int row = 0; row < transactions.rowCount(); row++) {
+                Transaction t = transactions.get(row);
+                if (t != null) {
+                    all.add(t);
+                }
+            }
+            return all;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
     public Optional<Transaction> findById(String value) {
-        return transactions.stream()
-                .filter(t -> t.getId().toString().equals(value))
-                .findFirst();
+        if (value == null) {
+            return Optional.empty();
+        }
+        try {
+            return findById(UUID.fromString(value.trim()));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    public Optional<Transaction> findById(UUID id) {
+        lock.readLock().lock();
+        try {
+            int row = transactions.find(id);
+            return row < 0 ? Optional.empty() : Optional.of(transactions.get(row));
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public ArrayList<Transaction> findTransactionsByAccount(Account a) {
-        return transactions.stream()
-                .filter(t -> t.getSourceAccount().equals(a) || t.getDestinationAccount().equals(a))
-                .collect(Collectors.toCollection(ArrayList::new));
+        if (a == null) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            TimeIndex indexed = rowsByAccount.get(a.getId());
+            ArrayList<Transaction> found = new ArrayList<>(indexed == null ? 0 : indexed.size());
+            if (indexed != null) {
+                indexed.forEach(row -> found.add(transactions.get(row)));
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Transactions dated within [from, to], oldest first. A null bound leaves
+     * that side of the window open.
+     */
+    public ArrayList<Transaction> findByDateRange(LocalDateTime from, LocalDateTime to) {
+        lock.readLock().lock();
+        try {
+            ArrayList<Transaction> found = new ArrayList<>();
+            rowsByTime.forEachInRange(from, to, row -> found.add(transactions.get(row)));
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Transactions touching any of the given accounts and dated within
+     * [from, to], oldest first. A transfer between two of the accounts is
+     * returned once.
+     */
+    public ArrayList<Transaction> findByDateRange(Collection<Account> accounts, LocalDateTime from,
+            LocalDateTime to) {
+        lock.readLock().lock();
+        try {
+            ArrayList<Transaction> found = new ArrayList<>();
+            Set<Integer> seen = new HashSet<>();
+            for (Account a : accounts) {
+                TimeIndex indexed = rowsByAccount.get(a.getId());
+                if (indexed != null) {
+                    indexed.forEachInRange(from, to, row -> {
+                        if (seen.add(row)) {
+                            found.add(transactions.get(row));
+                        }
+                    });
+                }
+            }
+            if (accounts.size() > 1) {
+                found.sort(Comparator.comparing(Transaction::getDateTime));
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
     public void save(Transaction transaction) {
+        checkPostable(transaction);
+        // Balances change under the account locks only; the write lock covers the ledger and journal
+        long seq = TransferEngine.post(transaction, () -> record(transaction));
+        Journal.getInstance().awaitDurable(seq);
+    }
+
+    /**
+     * Saves a posting at most once per idempotency key. A retry with a key
+     * used recently posts nothing and returns the transaction first posted
+     * under it, waiting for it if it is still in flight. If that first
+     * attempt failed, the key is freed so the next retry posts again. Reusing
+     * a key for a different posting is rejected with an
+     * InvalidTransactionException. A null key is a plain save.
+     */
+    public Transaction save(Transaction transaction, String idempotencyKey) {
+        return save(transaction, idempotencyKey, t -> {
+        });
+    }
+
+    /**
+     * Like {@link #save(Transaction, String)}, running a check such as a
+     * fraud screen just before posting. A retry answered from the key is
+     * not checked again.
+     */
+    public Transaction save(Transaction transaction, String idempotencyKey, Consumer<Transaction> check) {
+        if (idempotencyKey == null) {
+            check.accept(transaction);
+            save(transaction);
+            return transaction;
+        }
+        IdempotencyCache.Entry mine = idempotencyKeys.entry(idempotencyKey, transaction);
+        IdempotencyCache.Entry claimed = idempotencyKeys.claim(mine);
+        if (claimed != mine) {
+            try {
+                return claimed.outcome.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            check.accept(transaction);
+            save(transaction);
+        } catch (RuntimeException | Error e) {
+            idempotencyKeys.abandon(mine, e);
+            throw e;
+        }
+        idempotencyKeys.complete(mine, transaction);
+        return transaction;
+    }
+
+    /**
+     * Posts a batch in one pass. Every involved account is locked once and its
+     * balance and history are updated once; the ledger and journal are written
+     * under a single write lock with one durability wait at the end.
+     *
+     * Items are applied in order. One that fails validation, including a
+     * funds check against the balances the earlier items leave, is skipped
+     * and reported by its position while the rest are posted. Should another
+     * thread save one of the ids mid-batch, the whole batch is rejected.
+     */
+    public SaveResult saveAll(Collection<Transaction> batch) {
+        long started = System.nanoTime();
+        Map<Integer, String> failures = new TreeMap<>();
+        List<Transaction> candidates = new ArrayList<>(batch.size());
+        int[] positions = new int[batch.size()];
+        Set<UUID> batchIds = new HashSet<>(batch.size() * 2);
+
+        lock.readLock().lock();
+        try {
+            int position = 0;
+            for (Transaction t : batch) {
+                try {
+                    checkPostable(t);
+                    requireOpenAccounts(t);
+                    if (!batchIds.add(t.getId()) || contains(t.getId())) {
+                        throw new InvalidTransactionException("Transaction already saved: " + t.getId());
+                    }
+                    positions[candidates.size()] = position;
+                    candidates.add(t);
+                } catch (RuntimeException e) {
+                    failures.put(position, e.getMessage());
+                }
+                position++;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Journal journal = Journal.getInstance();
+        long seq = TransferEngine.postAll(candidates,
+                (e, i) -> failures.put(positions[i], e.getMessage()),
+                accepted -> {
+                    lock.writeLock().lock();
+                    try {
+                        for (Transaction t : accepted) {
+                            requireOpenAccounts(t);
+                            if (contains(t.getId())) {
+                                throw new InvalidTransactionException("Transaction already saved: " + t.getId());
+                            }
+                        }
+                        // Journal first, all or nothing, so a failed append leaves no row behind
+                        long last = journal.transactionsPosted(accepted);
+                        for (Transaction t : accepted) {
+                            addToLedger(t);
+                        }
+                        return last;
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                });
+        journal.awaitDurable(seq);
+        return new SaveResult(batch.size() - failures.size(), failures, System.nanoTime() - started);
+    }
+
+    /**
+     * Puts a transaction back into the ledger and its indexes without applying
+     * it to any balance. Only meant for restoring a snapshot, whose balances are
+     * already final.
+     */
+    public void restore(Transaction transaction) {
+        lock.writeLock().lock();
+        try {
+            if (contains(transaction.getId())) {
+                throw new InvalidTransactionException("Transaction already saved: " + transaction.getId());
+            }
+            addToLedger(transaction);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Undoes a transaction by posting its reversal. The reversal is applied to
+     * the affected balances and recorded in the ledger; the original is removed
+     * from the ledger and from both accounts' histories.
+     */
+    public void reverse(Transaction original, Transaction reversal) {
+        if (original == null || reversal == null) {
+            throw new InvalidTransactionException("reversal", "Transactions cannot be null");
+        }
+
+        Journal journal = Journal.getInstance();
+        long seq = TransferEngine.post(reversal, () -> {
+            lock.writeLock().lock();
+            try {
+                if (!contains(original.getId())) {
+                    throw new InvalidTransactionException("Transaction not found in repository");
+                }
+                if (contains(reversal.getId())) {
+                    throw new InvalidTransactionException("Transaction already saved: " + reversal.getId());
+                }
+
+                long reversed = journal.transactionReversed(original, reversal);
+                removeFromLedger(original);
+                removeFromHistories(original);
+                addToLedger(reversal);
+                return reversed;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+        journal.awaitDurable(seq);
+    }
+
+    @Override
+    public DeleteResult delete(String field, String value) {
+        try {
+            switch (field.toLowerCase()) {
+                case "id":
+                    return deleteById(UUID.fromString(value.trim()));
+                case "transactiontype":
+                    return deleteByTransactionType(TransactionType.valueOf(value.trim().toUpperCase()));
+                case "description":
+                    return deleteByDescription(value);
+                case "date":
+                    return deleteByDate(LocalDate.parse(value.trim()));
+                case "amount":
+                    return deleteByAmount(Money.parse(value));
+                default:
+                    return DeleteResult.none();
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return DeleteResult.none();
+        }
+    }
+
+    public DeleteResult deleteById(UUID id) {
+        return removeMatching(action -> {
+            int row = transactions.find(id);
+            if (row >= 0) {
+                action.accept(row);
+            }
+        }, t -> true);
+    }
+
+    public DeleteResult deleteByAccount(Account a) {
+        return removeMatching(action -> {
+            TimeIndex indexed = rowsByAccount.get(a.getId());
+            if (indexed != null) {
+                indexed.forEach(action);
+            }
+        }, t -> true);
+    }
+
+    /**
+     * Deletes the transactions dated within [from, to]; a null bound leaves
+     * that side of the window open.
+     */
+    public DeleteResult deleteByDateRange(LocalDateTime from, LocalDateTime to) {
+        return removeMatching(action -> rowsByTime.forEachInRange(from, to, action), t -> true);
+    }
+
+    public DeleteResult deleteByDate(LocalDate date) {
+        return deleteByDateRange(date.atStartOfDay(), date.atTime(LocalTime.MAX));
+    }
+
+    public DeleteResult deleteByTransactionType(TransactionType transactionType) {
+        return removeMatching(this::forEachRow, t -> t.getTransactionType() == transactionType);
+    }
+
+    public DeleteResult deleteByDescription(String description) {
+        return removeMatching(this::forEachRow, t -> t.getDescription().equalsIgnoreCase(description));
+    }
+
+    public DeleteResult deleteByAmount(long amount) {
+        return removeMatching(this::forEachRow, t -> t.getAmountMinorUnits() == amount);
+    }
+
+    public DeleteResult deleteWhere(Predicate<Transaction> filter) {
+        return removeMatching(this::forEachRow, filter);
+    }
+
+    @Override
+    public void delete(Transaction t) {
+        if (t == null) {
+            throw new InvalidTransactionException("Cannot delete null transaction");
+        }
+
+        Journal journal = Journal.getInstance();
+        long seq = TransferEngine.withAccountsLocked(accountsOf(List.of(t)), () -> {
+            lock.writeLock().lock();
+            try {
+                if (!contains(t.getId())) {
+                    throw new InvalidTransactionException("Transaction not found in repository");
+                }
+                long deleted = journal.transactionDeleted(t);
+                removeFromLedger(t);
+                removeFromHistories(t);
+                return deleted;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+        journal.awaitDurable(seq);
+    }
+
+    /**
+     * Removes the candidate rows whose transaction passes the filter. Candidates
+     * come from an index where one applies; the store, both time indexes and
+     * the account histories are each compacted once for the whole batch.
+     *
+     * The affected accounts are only known after the scan, while the account
+     * locks must be taken before the repository lock. So the scan runs with
+     * the accounts locked that the previous attempt found; if the matches
+     * now touch any other account, the locks are released and the scan
+     * retried with those added.
+     */
+    private DeleteResult removeMatching(Consumer<IntConsumer> candidates, Predicate<Transaction> filter) {
+        long started = System.nanoTime();
+        Journal journal = Journal.getInstance();
+        long[] seq = new long[1];
+        List<Transaction> doomed = new ArrayList<>();
+        Set<Account> locked = new HashSet<>();
+        while (true) {
+            Set<Account> missing = TransferEngine.withAccountsLocked(locked, () -> {
+                lock.writeLock().lock();
+                try {
+                    doomed.clear();
+                    BitSet rows = new BitSet();
+                    candidates.accept(row -> {
+                        Transaction t = transactions.get(row);
+                        if (t != null && filter.test(t)) {
+                            rows.set(row);
+                            doomed.add(t);
+                        }
+                    });
+                    Set<Account> involved = accountsOf(doomed);
+                    if (!locked.containsAll(involved)) {
+                        return involved;
+                    }
+                    if (!doomed.isEmpty()) {
+                        seq[0] = journal.transactionsDeleted(doomed);
+                        removeFromLedger(doomed, rows);
+                    }
+                    return null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+            if (missing == null) {
+                break;
+            }
+            locked.addAll(missing);
+        }
+        journal.awaitDurable(seq[0]);
+        return new DeleteResult(doomed.size(), 0, System.nanoTime() - started);
+    }
+
+    private static Set<Account> accountsOf(List<Transaction> postings) {
+        Set<Account> accounts = new HashSet<>();
+        for (Transaction t : postings) {
+            accounts.add(t.getSourceAccount());
+            accounts.add(t.getDestinationAccount());
+        }
+        return accounts;
+    }
+
+    ReentrantReadWriteLock lock() {
+        return lock;
+    }
+
+    /**
+     * Refuses a posting to an account deleted meanwhile. Account deletion
+     * takes the account locks, which the caller holds, so the answer cannot
+     * change before the posting is recorded.
+     */
+    private static void requireOpenAccounts(Transaction t) {
+        AccountRepository accounts = AccountRepository.getInstance();
+        if (!accounts.isOpen(t.getSourceAccount()) || !accounts.isOpen(t.getDestinationAccount())) {
+            throw new AccountNotFoundException("Account was closed before the posting: " + t.getId());
+        }
+    }
+
+    private static void checkPostable(Transaction transaction) {
         if (transaction == null) {
             throw new InvalidTransactionException("Cannot save null transaction");
         }
@@ -53,49 +511,110 @@ public class TransactionRepository implements RepositoryBase<Transaction> {
         if (transaction.getDestinationAccount() == null) {
             throw new AccountNotFoundException("Destination account cannot be null");
         }
-        if (transaction.getAmount() <= 0) {
+        if (transaction.getAmountMinorUnits() <= 0) {
             throw new exceptions.NegativeAmountException(transaction.getAmount());
         }
+    }
 
-        transaction.getSourceAccount().addTransaction(transaction);
-        if (!transaction.getSourceAccount().equals(transaction.getDestinationAccount())) {
-            transaction.getDestinationAccount().addTransaction(transaction);
+    // Adds an already-applied posting to the ledger and journal; called with its accounts locked
+    private long record(Transaction transaction) {
+        requireOpenAccounts(transaction);
+        lock.writeLock().lock();
+        try {
+            if (contains(transaction.getId())) {
+                throw new InvalidTransactionException("Transaction already saved: " + transaction.getId());
+            }
+            // Journal first: if the append fails the posting leaves no row behind
+            long seq = Journal.getInstance().transactionPosted(transaction);
+            addToLedger(transaction);
+            return seq;
+        } finally {
+            lock.writeLock().unlock();
         }
-        transactions.add(transaction);
     }
 
-    @Override
-    public void delete(String field, String value) {
-        switch (field.toLowerCase()) {
-            case "id":
-                transactions.removeIf(t -> t.getId().toString().equals(value));
-                break;
-            case "transactiontype":
-                transactions.removeIf(t -> t.getTransactionType().toString().equalsIgnoreCase(value));
-                break;
-            case "description":
-                transactions.removeIf(t -> t.getDescription().equalsIgnoreCase(value));
-                break;
-            case "date":
-                transactions.removeIf(t -> t.getDate().toString().equalsIgnoreCase(value));
-                break;
-            case "amount":
-                transactions.removeIf(t -> Double.toString(t.getAmount()).equalsIgnoreCase(value));
-                break;
-            default:
-                break;
+    // The helpers below are called with the write lock held
+
+    private void forEachRow(IntConsumer action) {
+        for (int row = 0; row < transactions.rowCount(); row++) {
+            action.accept(row);
         }
     }
 
-    @Override
-    public void delete(Transaction t) {
-        if (t == null) {
-            throw new InvalidTransactionException("Cannot delete null transaction");
+    private boolean contains(UUID id) {
+        return transactions.find(id) >= 0;
+    }
+
+    private void addToLedger(Transaction t) {
+        int row = transactions.append(t);
+        rowsByTime.add(t.getDateTime(), row);
+        indexByAccount(t.getSourceAccount().getId(), t, row);
+        if (!t.getSourceAccount().equals(t.getDestinationAccount())) {
+            indexByAccount(t.getDestinationAccount().getId(), t, row);
+        }
+    }
+
+    private void removeFromLedger(Transaction t) {
+        int row = transactions.find(t.getId());
+        if (row < 0) {
+            return;
+        }
+        transactions.remove(row);
+        rowsByTime.remove(t.getDateTime(), row);
+        unindexByAccount(t.getSourceAccount().getId(), t, row);
+        if (!t.getSourceAccount().equals(t.getDestinationAccount())) {
+            unindexByAccount(t.getDestinationAccount().getId(), t, row);
+        }
+    }
+
+    // Called with the accounts of every doomed transaction locked, then the write lock
+    private void removeFromLedger(List<Transaction> doomed, BitSet rows) {
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            transactions.remove(row);
+        }
+        rowsByTime.removeAll(rows);
+
+        // Group by account so each per-account index and history is compacted once
+        Map<Account, Set<UUID>> idsByAccount = new HashMap<>();
+        for (Transaction t : doomed) {
+            idsByAccount.computeIfAbsent(t.getSourceAccount(), k -> new HashSet<>()).add(t.getId());
+            idsByAccount.computeIfAbsent(t.getDestinationAccount(), k -> new HashSet<>()).add(t.getId());
+        }
+        for (Map.Entry<Account, Set<UUID>> entry : idsByAccount.entrySet()) {
+            Account a = entry.getKey();
+            TimeIndex indexed = rowsByAccount.get(a.getId());
+            if (indexed != null) {
+                indexed.removeAll(rows);
+                if (indexed.size() == 0) {
+                    rowsByAccount.remove(a.getId());
+                }
+            }
+            Set<UUID> ids = entry.getValue();
+            a.getTransactions().removeIf(t -> ids.contains(t.getId()));
+        }
+    }
+
+    // O(1) through the slot kept on the transaction
+    private void removeFromHistories(Transaction t) {
+        t.getSourceAccount().getTransactions().remove(t);
+        if (!t.getSourceAccount().equals(t.getDestinationAccount())) {
+            t.getDestinationAccount().getTransactions().remove(t);
+        }
+    }
+
+    private void indexByAccount(UUID accountId, Transaction t, int row) {
+        rowsByAccount.computeIfAbsent(accountId, k -> new TimeIndex()).add(t.getDateTime(), row);
+    }
+
+    private void unindexByAccount(UUID accountId, Transaction t, int row) {
+        TimeIndex indexed = rowsByAccount.get(accountId);
+        if (indexed == null) {
+            return;
         }
-        if (!transactions.contains(t)) {
-            throw new InvalidTransactionException("Transaction not found in repository");
+        indexed.remove(t.getDateTime(), row);
+        if (indexed.size() == 0) {
+            rowsByAccount.remove(accountId);
         }
-        transactions.remove(t);
     }
 
 }
@@ -0,0 +1,58 @@
+package repositories;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import models.Transaction;
+
+/**
+ * Row storage behind {@link TransactionRepository}: the transaction objects
+ * themselves in an ArrayList. Rows are addressed by the index returned from
+ * {@link #append}, which stays valid for the life of the store; removed rows
+ * become tombstones. The store also owns the id index.
+ *
+ * Not thread-safe on its own, callers hold the repository lock.
+ */
+final class TransactionStore {
+    private final ArrayList<Transaction> rows = new ArrayList<>();
+    private final Map<UUID, Integer> rowsById = new HashMap<>();
+    private int size;
+
+    int append(Transaction t) {
+        rows.add(t);
+        rowsById.put(t.getId(), rows.size() - 1);
+        size++;
+        return rows.size() - 1;
+    }
+
+    // Returns null for a removed row
+    Transaction get(int row) {
+        return rows.get(row);
+    }
+
+    void remove(int row) {
+        Transaction removed = rows.set(row, null);
+        if (removed != null) {
+            rowsById.remove(removed.getId());
+            size--;
+        }
+    }
+
+    // Returns the live row holding the given transaction id, or -1
+    int find(UUID id) {
+        Integer row = rowsById.get(id);
+        return row == null ? -1 : row;
+    }
+
+    // Number of rows ever appended, tombstones included
+    int rowCount() {
+        return rows.size();
+    }
+
+    // Number of live rows
+    int size() {
+        return size;
+    }
+}
@@ -66,7 +66,10 @@ public final class AuthService implements AuthInterface {
                     password,
                     UserType.USER);
 
-            customerRepository.save(customer);
+            // Claim the email atomically in case a concurrent registration got there first
+            if (!customerRepository.saveIfEmailAbsent(customer)) {
+                throw new AuthenticationFailedException("registration", "Email address already registered");
+            }
             Console.success("Registration completed successfully! Welcome, " + firstName + "!");
             return true;
 
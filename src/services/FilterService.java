@@ -4,8 +4,11 @@ import models.Customer;
 import models.Transaction;
 import models.TransactionType;
 import utils.Console;
+import utils.Money;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Locale;
 import java.util.stream.Collectors;
 
 public class FilterService {
@@ -21,7 +24,26 @@ public class FilterService {
         return instance;
     }
 
+    /**
+     * Answers a date-range filter from an index instead of scanning the list.
+     * Null bounds leave that side of the window open.
+     */
+    @FunctionalInterface
+    public interface DateRangeLookup {
+        ArrayList<Transaction> find(LocalDateTime from, LocalDateTime to);
+    }
+
     public ArrayList<Transaction> filterTransactions(ArrayList<Transaction> transactions) {
+        return filterTransactions(transactions, null);
+    }
+
+    /**
+     * Same menu as {@link #filterTransactions(ArrayList)}; when a lookup is
+     * given, date-range filters go through it rather than the list. The lookup
+     * must cover the same transactions as the list.
+     */
+    public ArrayList<Transaction> filterTransactions(ArrayList<Transaction> transactions,
+            DateRangeLookup dateRangeLookup) {
         Console.line();
         Console.info("Filter Transactions:");
         Console.info("1) By Transaction Type");
@@ -40,7 +62,7 @@ public class FilterService {
             case "2":
                 return filterByDescription(transactions);
             case "3":
-                return filterByDateRange(transactions);
+                return filterByDateRange(transactions, dateRangeLookup);
             case "4":
                 return filterByAmountRange(transactions);
             default:
@@ -73,10 +95,10 @@ public class FilterService {
                 sortedTransactions.sort((t1, t2) -> t1.getDate().compareTo(t2.getDate()));
                 break;
             case "3":
-                sortedTransactions.sort((t1, t2) -> Double.compare(t2.getAmount(), t1.getAmount()));
+                sortedTransactions.sort((t1, t2) -> Money.compare(t2.getAmountMinorUnits(), t1.getAmountMinorUnits()));
                 break;
             case "4":
-                sortedTransactions.sort((t1, t2) -> Double.compare(t1.getAmount(), t2.getAmount()));
+                sortedTransactions.sort((t1, t2) -> Money.compare(t1.getAmountMinorUnits(), t2.getAmountMinorUnits()));
                 break;
             case "5":
                 sortedTransactions.sort((t1, t2) -> t1.getTransactionType().compareTo(t2.getTransactionType()));
@@ -118,12 +140,14 @@ public class FilterService {
             return transactions;
         }
 
+        String keyword = description.toLowerCase(Locale.ROOT);
         return transactions.stream()
-                .filter(t -> t.getDescription().toLowerCase().contains(description.toLowerCase()))
+                .filter(t -> t.getDescriptionEntry().containsLowerCase(keyword))
                 .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
     }
 
-    private ArrayList<Transaction> filterByDateRange(ArrayList<Transaction> transactions) {
+    private ArrayList<Transaction> filterByDateRange(ArrayList<Transaction> transactions,
+            DateRangeLookup dateRangeLookup) {
         try {
             String startDate = Console.ask("Enter start date (yyyy-MM-dd) or press Enter for no start limit: ");
             String endDate = Console.ask("Enter end date (yyyy-MM-dd) or press Enter for no end limit: ");
@@ -143,6 +167,10 @@ public class FilterService {
                 end = java.time.LocalDateTime.parse(endDate + "T" + timeStr + ":59");
             }
 
+            if (dateRangeLookup != null) {
+                return dateRangeLookup.find(start, end);
+            }
+
             final java.time.LocalDateTime finalStart = start;
             final java.time.LocalDateTime finalEnd = end;
 
@@ -166,12 +194,12 @@ public class FilterService {
             String minAmount = Console.ask("Enter minimum amount or press Enter for no minimum: ");
             String maxAmount = Console.ask("Enter maximum amount or press Enter for no maximum: ");
 
-            Double min = minAmount.trim().isEmpty() ? null : Double.parseDouble(minAmount);
-            Double max = maxAmount.trim().isEmpty() ? null : Double.parseDouble(maxAmount);
+            Long min = minAmount.trim().isEmpty() ? null : Money.ofMajor(Double.parseDouble(minAmount));
+            Long max = maxAmount.trim().isEmpty() ? null : Money.ofMajor(Double.parseDouble(maxAmount));
 
             return transactions.stream()
                     .filter(t -> {
-                        double amount = t.getAmount();
+                        long amount = t.getAmountMinorUnits();
                         boolean aboveMin = min == null || amount >= min;
                         boolean belowMax = max == null || amount <= max;
                         return aboveMin && belowMax;
@@ -189,22 +217,22 @@ public class FilterService {
         Console.success("Your Transactions (" + transactions.size() + " results):");
         Console.line();
 
-        double totalIn = 0, totalOut = 0;
+        long totalIn = 0, totalOut = 0;
 
         for (int i = 0; i < transactions.size(); i++) {
             Transaction t = transactions.get(i);
             String accountInfo = "";
             String sign = "";
-            double effectiveAmount = t.getAmount();
+            long effectiveAmount = t.getAmountMinorUnits();
 
             // Determine which account and direction
             if (t.getTransactionType() == TransactionType.DEPOSIT) {
                 sign = "+";
-                totalIn += effectiveAmount;
+                totalIn = Money.add(totalIn, effectiveAmount);
                 accountInfo = "[" + t.getDestinationAccount().getAccountType() + "]";
             } else if (t.getTransactionType() == TransactionType.WITHDRAWAL) {
                 sign = "-";
-                totalOut += effectiveAmount;
+                totalOut = Money.add(totalOut, effectiveAmount);
                 accountInfo = "[" + t.getSourceAccount().getAccountType() + "]";
             } else { // TRANSFER
                 boolean isSource = customer.getAccounts().contains(t.getSourceAccount());
@@ -218,26 +246,26 @@ public class FilterService {
                 } else if (isSource) {
                     // Outgoing transfer to someone else
                     sign = "-";
-                    totalOut += effectiveAmount;
+                    totalOut = Money.add(totalOut, effectiveAmount);
                     accountInfo = "[" + t.getSourceAccount().getAccountType() + " -> External]";
                 } else {
                     // Incoming transfer from someone else
                     sign = "+";
-                    totalIn += effectiveAmount;
+                    totalIn = Money.add(totalIn, effectiveAmount);
                     accountInfo = "[External -> " + t.getDestinationAccount().getAccountType() + "]";
                 }
             }
 
             Console.info((i + 1) + ") " + t.getTransactionType() + " " + accountInfo + " | " +
-                    sign + "$" + String.format("%.2f", effectiveAmount) + " | " +
+                    sign + "$" + Money.format(effectiveAmount) + " | " +
                     t.getDescription() + " | " + t.getFormattedDateTime());
         }
 
         Console.line();
         Console.success("Summary:");
-        Console.info("Total Money In: +$" + String.format("%.2f", totalIn));
-        Console.info("Total Money Out: -$" + String.format("%.2f", totalOut));
-        Console.info("Net Change: $" + String.format("%.2f", (totalIn - totalOut)));
+        Console.info("Total Money In: +$" + Money.format(totalIn));
+        Console.info("Total Money Out: -$" + Money.format(totalOut));
+        Console.info("Net Change: $" + Money.format(Money.subtract(totalIn, totalOut)));
         Console.line();
     }
 
@@ -0,0 +1,180 @@
+package services;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import exceptions.AccountNotFoundException;
+import exceptions.InsufficientFundsException;
+import exceptions.InvalidTransactionException;
+import exceptions.NegativeAmountException;
+import exceptions.SuspiciousActivityException;
+import models.Account;
+import models.Transaction;
+import models.TransactionType;
+import repositories.TransactionRepository;
+
+/**
+ * Non-interactive posting API. Each call validates, screens for fraud and
+ * posts on the service's executor, and returns a future that completes with
+ * the transaction once it is durable, or exceptionally with the reason it
+ * was rejected.
+ *
+ * Postings on different threads are screened against the history as it
+ * stands when their check runs, so concurrent postings to one account do
+ * not see each other.
+ */
+public final class PostingService {
+    private final Executor executor;
+    private final TransactionRepository transactionRepository;
+    private final SuspiciousTransactionDetector suspiciousDetector;
+
+    private static class Holder {
+        // Threads mostly wait for the journal, so several per core keep it busy
+        static final PostingService INSTANCE = new PostingService(Executors.newFixedThreadPool(
+                Integer.getInteger("bank.posting.threads", 4 * Runtime.getRuntime().availableProcessors()),
+                r -> {
+                    Thread t = new Thread(r, "posting");
+                    t.setDaemon(true);
+                    return t;
+                }));
+    }
+
+    public static PostingService getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    public PostingService(Executor executor) {
+        this.executor = executor;
+        this.transactionRepository = TransactionRepository.getInstance();
+        this.suspiciousDetector = new SuspiciousTransactionDetector();
+    }
+
+    public CompletableFuture<Transaction> deposit(Account account, double amount, String description) {
+        return deposit(account, amount, description, null);
+    }
+
+    /**
+     * Deposits at most once per non-null idempotency key, so a client may
+     * retry with the same key; see {@link TransactionRepository#save(Transaction, String)}.
+     */
+    public CompletableFuture<Transaction> deposit(Account account, double amount, String description,
+            String idempotencyKey) {
+        return post(TransactionType.DEPOSIT, account, account, amount, describe(description, "Deposit"),
+                idempotencyKey);
+    }
+
+    public CompletableFuture<Transaction> withdraw(Account account, double amount, String description) {
+        return withdraw(account, amount, description, null);
+    }
+
+    // Withdraws at most once per non-null idempotency key
+    public CompletableFuture<Transaction> withdraw(Account account, double amount, String description,
+            String idempotencyKey) {
+        return post(TransactionType.WITHDRAWAL, account, account, amount, describe(description, "Withdrawal"),
+                idempotencyKey);
+    }
+
+    public CompletableFuture<Transaction> transfer(Account source, Account destination, double amount,
+            String description) {
+        return transfer(source, destination, amount, description, null);
+    }
+
+    // Transfers at most once per non-null idempotency key
+    public CompletableFuture<Transaction> transfer(Account source, Account destination, double amount,
+            String description, String idempotencyKey) {
+        return post(TransactionType.TRANSFER, source, destination, amount, describe(description, "Transfer"),
+                idempotencyKey);
+    }
+
+    /**
+     * Posts a transaction built by the caller. A non-null idempotency key
+     * makes retries safe, see {@link TransactionRepository#save(Transaction, String)}.
+     */
+    public CompletableFuture<Transaction> post(Transaction transaction, String idempotencyKey) {
+        return CompletableFuture.supplyAsync(() -> {
+            validate(transaction);
+            return transactionRepository.save(transaction, idempotencyKey, this::screen);
+        }, executor);
+    }
+
+    private CompletableFuture<Transaction> post(TransactionType type, Account source, Account destination,
+            double amount, String description, String idempotencyKey) {
+        try {
+            validatePositiveAmount(amount);
+            validateAccount(source);
+            validateAccount(destination);
+            return post(new Transaction(type, amount, description, source, destination), idempotencyKey);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Waits for a posting and rethrows the reason it was rejected as is,
+     * rather than wrapped, for callers that post one at a time.
+     */
+    public static Transaction await(CompletableFuture<Transaction> posting) {
+        try {
+            return posting.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    // Validation shared with the console flows, which check early to fail before asking for more input
+
+    public void validatePositiveAmount(double amount) throws NegativeAmountException {
+        if (amount <= 0) {
+            throw new NegativeAmountException(amount);
+        }
+    }
+
+    public void validateAccount(Account account) throws AccountNotFoundException {
+        if (account == null) {
+            throw new AccountNotFoundException("Account is null");
+        }
+    }
+
+    public void validateSufficientFunds(Account account, double amount) throws InsufficientFundsException {
+        if (amount > account.getBalance()) {
+            throw new InsufficientFundsException(amount, account.getBalance());
+        }
+    }
+
+    public void validateTransferAccounts(Account source, Account destination) throws InvalidTransactionException {
+        if (source.getId().equals(destination.getId())) {
+            throw new InvalidTransactionException("transfer", "Cannot transfer to the same account");
+        }
+    }
+
+    private void validate(Transaction transaction) {
+        if (transaction == null) {
+            throw new InvalidTransactionException("Cannot save null transaction");
+        }
+        validateAccount(transaction.getSourceAccount());
+        validateAccount(transaction.getDestinationAccount());
+        if (transaction.getTransactionType() == TransactionType.TRANSFER) {
+            validateTransferAccounts(transaction.getSourceAccount(), transaction.getDestinationAccount());
+        }
+    }
+
+    // Checks against the account's current state; skipped for a retry answered from its idempotency key
+    private void screen(Transaction transaction) {
+        if (transaction.getTransactionType() != TransactionType.DEPOSIT) {
+            validateSufficientFunds(transaction.getSourceAccount(), transaction.getAmount());
+        }
+        validateSuspiciousActivity(transaction);
+    }
+
+    private void validateSuspiciousActivity(Transaction transaction) throws SuspiciousActivityException {
+        List<Transaction> history = transaction.getSourceAccount().getTransactions();
+        suspiciousDetector.validateTransaction(history, transaction);
+    }
+
+    private static String describe(String description, String fallback) {
+        return description == null || description.trim().isEmpty() ? fallback : description;
+    }
+}
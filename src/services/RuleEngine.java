@@ -0,0 +1,440 @@
+package services;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import exceptions.SuspiciousActivityException;
+import models.Account;
+import models.AccountType;
+import models.Ledger;
+import models.Transaction;
+import models.UserType;
+import utils.Console;
+import utils.Money;
+
+/**
+ * Suspicious-activity rules compiled from a properties file into a flat plan:
+ * for every account type and customer user type, the array of rules that
+ * apply, cheapest checks first. A posting is flagged by the first rule it
+ * hits. Each rule counts its evaluations, hits and time spent.
+ *
+ * The file is bank.rules.path (default data/fraud-rules.properties) and is
+ * checked for changes every bank.rules.reload.seconds (default 30, 0 turns
+ * reloading off). A file that fails to compile leaves the current rules in
+ * place. Without a file the built-in rules below apply. Each rule is a group
+ * of keys under rule.&lt;name&gt;:
+ *
+ * <pre>
+ * rule.high-value.check = high-value
+ * rule.high-value.limit = 10000.00
+ * rule.burst.check = burst
+ * rule.burst.count = 5
+ * rule.burst.window.seconds = 60
+ * rule.repetitive.check = repetitive
+ * rule.repetitive.threshold = 8
+ * # optional on any rule, default all
+ * rule.burst.account.types = CHECKING,SAVINGS
+ * rule.burst.user.types = USER
+ * rule.burst.enabled = true
+ * </pre>
+ */
+public final class RuleEngine {
+
+    private static final String DEFAULT_RULES = String.join("\n",
+            "rule.high-value.check = high-value",
+            "rule.high-value.limit = 10000.00",
+            "rule.burst.check = burst",
+            "rule.burst.count = 5",
+            "rule.burst.window.seconds = 60",
+            "rule.repetitive.check = repetitive",
+            "rule.repetitive.threshold = 8");
+
+    private static final int USER_TYPES = UserType.values().length;
+
+    private final Path path;
+    // Rules per scope, indexed by scope(); replaced whole on reload
+    private volatile Rule[][] plan;
+    private volatile List<Rule> rules;
+    private long loadedModified = -1;
+
+    private static class Holder {
+        static final RuleEngine INSTANCE = start();
+    }
+
+    public static RuleEngine getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private static RuleEngine start() {
+        RuleEngine engine = new RuleEngine(Paths.get(System.getProperty("bank.rules.path",
+                "data/fraud-rules.properties")));
+        long interval = Long.getLong("bank.rules.reload.seconds", 30);
+        if (interval > 0) {
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "rules-reloader");
+                t.setDaemon(true);
+                return t;
+            });
+            scheduler.scheduleWithFixedDelay(engine::reloadIfChanged, interval, interval, TimeUnit.SECONDS);
+        }
+        return engine;
+    }
+
+    RuleEngine(Path path) {
+        this.path = path;
+        install(compile(defaults()));
+        reloadIfChanged();
+    }
+
+    /**
+     * Throws for the first rule the posting hits, checked against the
+     * source account's history.
+     */
+    public void evaluate(List<Transaction> history, Transaction transaction) throws SuspiciousActivityException {
+        Rule hit = firstHit(history, transaction);
+        if (hit != null) {
+            throw hit.violation(transaction);
+        }
+    }
+
+    public boolean test(List<Transaction> history, Transaction transaction) {
+        return firstHit(history, transaction) != null;
+    }
+
+    /**
+     * Reads the rules file again if it changed since it was last loaded.
+     * Returns false when the file does not compile; the current rules stay.
+     */
+    public synchronized boolean reloadIfChanged() {
+        try {
+            long modified = Files.exists(path) ? Files.getLastModifiedTime(path).toMillis() : 0;
+            if (modified == loadedModified) {
+                return true;
+            }
+            Properties config = modified == 0 ? defaults() : read(path);
+            install(compile(config));
+            loadedModified = modified;
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            Console.error("Fraud rules not reloaded from " + path + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Per-rule counters of the current rules, in plan order
+    public List<RuleStatistics> statistics() {
+        List<RuleStatistics> result = new ArrayList<>();
+        for (Rule rule : rules) {
+            result.add(new RuleStatistics(rule.name, rule.evaluations.sum(), rule.hits.sum(), rule.nanos.sum()));
+        }
+        return result;
+    }
+
+    private Rule firstHit(List<Transaction> history, Transaction transaction) {
+        Rule[] scoped = plan[scope(transaction.getSourceAccount())];
+        // One clock read per rule: each rule is charged the time since the previous one ended
+        long start = System.nanoTime();
+        for (Rule rule : scoped) {
+            boolean hit = rule.matches(history, transaction);
+            long end = System.nanoTime();
+            rule.record(end - start, hit);
+            if (hit) {
+                return rule;
+            }
+            start = end;
+        }
+        return null;
+    }
+
+    private void install(List<Rule> compiled) {
+        Rule[][] scopes = new Rule[AccountType.values().length * USER_TYPES][];
+        for (AccountType accountType : AccountType.values()) {
+            for (UserType userType : UserType.values()) {
+                scopes[accountType.ordinal() * USER_TYPES + userType.ordinal()] = compiled.stream()
+                        .filter(r -> r.accountTypes.contains(accountType) && r.userTypes.contains(userType))
+                        .toArray(Rule[]::new);
+            }
+        }
+        rules = compiled;
+        plan = scopes;
+    }
+
+    private static int scope(Account account) {
+        UserType userType = account.getCustomer() != null && account.getCustomer().getUserType() != null
+                ? account.getCustomer().getUserType()
+                : UserType.USER;
+        return account.getAccountType().ordinal() * USER_TYPES + userType.ordinal();
+    }
+
+    // Builds the rules, cheapest first and otherwise by name
+    static List<Rule> compile(Properties config) {
+        Set<String> names = new TreeSet<>();
+        for (String key : config.stringPropertyNames()) {
+            if (!key.startsWith("rule.") || key.indexOf('.', 5) < 0) {
+                throw new IllegalArgumentException("Unexpected key " + key);
+            }
+            names.add(key.substring(5, key.indexOf('.', 5)));
+        }
+        List<Rule> compiled = new ArrayList<>();
+        for (String name : names) {
+            RuleConfig rc = new RuleConfig(config, name);
+            if (!Boolean.parseBoolean(rc.get("enabled", "true"))) {
+                continue;
+            }
+            String check = rc.require("check");
+            Rule rule;
+            switch (check) {
+                case "high-value":
+                    rule = new HighValue(name, Money.parse(rc.require("limit")));
+                    break;
+                case "burst":
+                    rule = new Burst(name, rc.positiveInt("count"),
+                            TimeUnit.SECONDS.toMillis(rc.positiveInt("window.seconds")));
+                    break;
+                case "repetitive":
+                    rule = new Repetitive(name, rc.positiveInt("threshold"));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown check " + check + " in rule " + name);
+            }
+            rule.accountTypes = rc.types("account.types", AccountType.class);
+            rule.userTypes = rc.types("user.types", UserType.class);
+            compiled.add(rule);
+        }
+        compiled.sort(Comparator.comparingInt(Rule::cost));
+        return compiled;
+    }
+
+    private static Properties defaults() {
+        Properties config = new Properties();
+        try {
+            config.load(new StringReader(DEFAULT_RULES));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return config;
+    }
+
+    private static Properties read(Path path) throws IOException {
+        Properties config = new Properties();
+        try (Reader in = Files.newBufferedReader(path)) {
+            config.load(in);
+        }
+        return config;
+    }
+
+    // The keys of one rule, with the rule named in every error
+    private static final class RuleConfig {
+        private final Properties config;
+        private final String name;
+
+        RuleConfig(Properties config, String name) {
+            this.config = config;
+            this.name = name;
+        }
+
+        String get(String key, String fallback) {
+            return config.getProperty("rule." + name + "." + key, fallback).trim();
+        }
+
+        String require(String key) {
+            String value = config.getProperty("rule." + name + "." + key);
+            if (value == null || value.trim().isEmpty()) {
+                throw new IllegalArgumentException("Rule " + name + " needs " + key);
+            }
+            return value.trim();
+        }
+
+        int positiveInt(String key) {
+            try {
+                int value = Integer.parseInt(require(key));
+                if (value > 0) {
+                    return value;
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            throw new IllegalArgumentException("Rule " + name + " needs a positive whole number for " + key);
+        }
+
+        <E extends Enum<E>> Set<E> types(String key, Class<E> type) {
+            String value = get(key, "");
+            if (value.isEmpty()) {
+                return EnumSet.allOf(type);
+            }
+            Set<E> types = EnumSet.noneOf(type);
+            for (String part : value.split(",")) {
+                try {
+                    types.add(Enum.valueOf(type, part.trim().toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Rule " + name + " has unknown " + key + " value " + part.trim()
+                            + ", expected one of " + Arrays.toString(type.getEnumConstants()));
+                }
+            }
+            return types;
+        }
+    }
+
+    /**
+     * One compiled check with its counters. Checks read only the posting and
+     * the source account's history and allocate nothing unless they hit.
+     */
+    abstract static class Rule {
+        final String name;
+        Set<AccountType> accountTypes;
+        Set<UserType> userTypes;
+        final LongAdder evaluations = new LongAdder();
+        final LongAdder hits = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+
+        Rule(String name) {
+            this.name = name;
+        }
+
+        // Relative cost, lower runs first
+        abstract int cost();
+
+        abstract boolean matches(List<Transaction> history, Transaction t);
+
+        abstract SuspiciousActivityException violation(Transaction t);
+
+        void record(long elapsed, boolean hit) {
+            evaluations.increment();
+            nanos.add(elapsed);
+            if (hit) {
+                hits.increment();
+            }
+        }
+    }
+
+    // A single comparison on the posting itself
+    private static final class HighValue extends Rule {
+        private final long limit;
+
+        HighValue(String name, long limit) {
+            super(name);
+            this.limit = limit;
+        }
+
+        @Override
+        int cost() {
+            return 0;
+        }
+
+        @Override
+        boolean matches(List<Transaction> history, Transaction t) {
+            return t.getAmountMinorUnits() > limit;
+        }
+
+        @Override
+        SuspiciousActivityException violation(Transaction t) {
+            return new SuspiciousActivityException("HIGH_VALUE_TRANSACTION",
+                    String.format("Transaction amount $%.2f exceeds high value threshold of $%.2f",
+                            t.getAmount(), Money.toMajor(limit)));
+        }
+    }
+
+    // One probe of the ledger's pattern counts
+    private static final class Repetitive extends Rule {
+        private final int threshold;
+
+        Repetitive(String name, int threshold) {
+            super(name);
+            this.threshold = threshold;
+        }
+
+        @Override
+        int cost() {
+            return 1;
+        }
+
+        // Repetitive when enough earlier postings share the new one's type, amount and destination
+        @Override
+        boolean matches(List<Transaction> history, Transaction newTransaction) {
+            int alike;
+            if (history instanceof Ledger) {
+                alike = ((Ledger) history).countLike(newTransaction);
+            } else {
+                alike = 0;
+                for (Transaction t : history) {
+                    if (t.getTransactionType() == newTransaction.getTransactionType()
+                            && t.getAmountMinorUnits() == newTransaction.getAmountMinorUnits()
+                            && t.getDestinationAccount().getId().equals(newTransaction.getDestinationAccount().getId())) {
+                        alike++;
+                    }
+                }
+            }
+            return alike + 1 >= threshold;
+        }
+
+        @Override
+        SuspiciousActivityException violation(Transaction t) {
+            return new SuspiciousActivityException("REPETITIVE_PATTERN",
+                    String.format("Repetitive transaction pattern detected (threshold: %d)", threshold));
+        }
+    }
+
+    // A scan of the ledger's ring of recent posting times
+    private static final class Burst extends Rule {
+        private final int count;
+        private final long windowMillis;
+
+        Burst(String name, int count, long windowMillis) {
+            super(name);
+            if (count - 1 > Ledger.RECENT_POSTINGS) {
+                throw new IllegalArgumentException("Rule " + name + " count is above "
+                        + (Ledger.RECENT_POSTINGS + 1) + ", the most recent postings an account keeps");
+            }
+            this.count = count;
+            this.windowMillis = windowMillis;
+        }
+
+        @Override
+        int cost() {
+            return 2;
+        }
+
+        // A burst is the new posting plus enough earlier ones within the window before it
+        @Override
+        boolean matches(List<Transaction> history, Transaction newTransaction) {
+            long to = newTransaction.getEpochMillis();
+            long from = to - windowMillis;
+            int earlier;
+            if (history instanceof Ledger) {
+                earlier = ((Ledger) history).countRecentBetween(from, to);
+            } else {
+                earlier = 0;
+                for (Transaction t : history) {
+                    long at = t.getEpochMillis();
+                    if (at >= from && at <= to) {
+                        earlier++;
+                    }
+                }
+            }
+            return earlier + 1 >= count;
+        }
+
+        @Override
+        SuspiciousActivityException violation(Transaction t) {
+            return new SuspiciousActivityException("RAPID_TRANSACTIONS",
+                    String.format("More than %d transactions detected within %d seconds",
+                            count, windowMillis / 1000));
+        }
+    }
+}
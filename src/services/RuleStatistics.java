@@ -0,0 +1,45 @@
+package services;
+
+/**
+ * Counters for one fraud rule since it was last loaded: how often it ran,
+ * how often it flagged a posting, and the time it took.
+ */
+public final class RuleStatistics {
+    private final String rule;
+    private final long evaluations;
+    private final long hits;
+    private final long totalNanos;
+
+    RuleStatistics(String rule, long evaluations, long hits, long totalNanos) {
+        this.rule = rule;
+        this.evaluations = evaluations;
+        this.hits = hits;
+        this.totalNanos = totalNanos;
+    }
+
+    public String getRule() {
+        return rule;
+    }
+
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public double getAverageNanos() {
+        return evaluations == 0 ? 0 : (double) totalNanos / evaluations;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d evaluations, %d hits, %.0f ns average", rule, evaluations, hits,
+                getAverageNanos());
+    }
+}
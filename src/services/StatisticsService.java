@@ -5,7 +5,12 @@ import models.Customer;
 import models.Transaction;
 import models.TransactionType;
 import utils.Console;
+import utils.Money;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -53,30 +58,30 @@ public class StatisticsService {
         Console.success("=== Account Statistics ===");
         Console.info("Account Type: " + account.getAccountType());
         Console.info("Account ID: " + account.getId());
-        Console.info("Current Balance: $" + String.format("%.2f", account.getBalance()));
+        Console.info("Current Balance: $" + Money.format(account.getBalanceMinorUnits()));
         Console.info("Owner: " + account.getCustomer().getFullName());
         Console.info("Total Transactions: " + transactions.size());
 
         if (!transactions.isEmpty()) {
-            double totalDeposits = transactions.stream()
+            long totalDeposits = transactions.stream()
                     .filter(t -> t.getTransactionType() == TransactionType.DEPOSIT ||
                             (t.getTransactionType() == TransactionType.TRANSFER &&
                                     t.getDestinationAccount().equals(account)))
-                    .mapToDouble(Transaction::getAmount)
-                    .sum();
+                    .mapToLong(Transaction::getAmountMinorUnits)
+                    .reduce(0, Money::add);
 
-            double totalWithdrawals = transactions.stream()
+            long totalWithdrawals = transactions.stream()
                     .filter(t -> t.getTransactionType() == TransactionType.WITHDRAWAL ||
                             (t.getTransactionType() == TransactionType.TRANSFER &&
                                     t.getSourceAccount().equals(account)))
-                    .mapToDouble(Transaction::getAmount)
-                    .sum();
+                    .mapToLong(Transaction::getAmountMinorUnits)
+                    .reduce(0, Money::add);
 
             Console.line();
             Console.info("Account Transaction Statistics:");
-            Console.info("  Total Money In: +$" + String.format("%.2f", totalDeposits));
-            Console.info("  Total Money Out: -$" + String.format("%.2f", totalWithdrawals));
-            Console.info("  Net Change: $" + String.format("%.2f", (totalDeposits - totalWithdrawals)));
+            Console.info("  Total Money In: +$" + Money.format(totalDeposits));
+            Console.info("  Total Money Out: -$" + Money.format(totalWithdrawals));
+            Console.info("  Net Change: $" + Money.format(Money.subtract(totalDeposits, totalWithdrawals)));
 
             Console.info("  First Transaction: " + transactions.get(0).getFormattedDateTime());
             Console.info("  Last Transaction: " + transactions.get(transactions.size() - 1).getFormattedDateTime());
@@ -84,6 +89,28 @@ public class StatisticsService {
         Console.line();
     }
 
+    /**
+     * Balance in minor units at the end of the given instant, answered from
+     * the account's running-balance checkpoints.
+     */
+    public long balanceAt(Account account, LocalDateTime dateTime) {
+        return account.balanceAtMinorUnits(dateTime);
+    }
+
+    public void displayBalanceAt(Account account) {
+        String date = Console.ask("Enter date (yyyy-MM-dd): ");
+        String time = Console.ask("Enter time (HH:mm) or press Enter for end of day: ");
+        try {
+            LocalDateTime at = time.trim().isEmpty()
+                    ? LocalDate.parse(date.trim()).atTime(LocalTime.MAX)
+                    : LocalDateTime.parse(date.trim() + "T" + time.trim() + ":00");
+            Console.info("Balance at " + date.trim() + (time.trim().isEmpty() ? " (end of day)" : " " + time.trim())
+                    + ": $" + Money.format(balanceAt(account, at)));
+        } catch (DateTimeParseException e) {
+            Console.error("Invalid date/time format. Please use yyyy-MM-dd for date and HH:mm for time.");
+        }
+    }
+
     public void displaySystemStatistics(ArrayList<Transaction> transactions) {
         Console.line();
         Console.success("=== System Transaction Statistics ===");
@@ -96,15 +123,15 @@ public class StatisticsService {
         long transfers = transactions.stream().filter(t -> t.getTransactionType() == TransactionType.TRANSFER).count();
 
         // Calculate totals
-        double totalDeposits = transactions.stream()
+        long totalDeposits = transactions.stream()
                 .filter(t -> t.getTransactionType() == TransactionType.DEPOSIT)
-                .mapToDouble(Transaction::getAmount).sum();
-        double totalWithdrawals = transactions.stream()
+                .mapToLong(Transaction::getAmountMinorUnits).reduce(0, Money::add);
+        long totalWithdrawals = transactions.stream()
                 .filter(t -> t.getTransactionType() == TransactionType.WITHDRAWAL)
-                .mapToDouble(Transaction::getAmount).sum();
-        double totalTransfers = transactions.stream()
+                .mapToLong(Transaction::getAmountMinorUnits).reduce(0, Money::add);
+        long totalTransfers = transactions.stream()
                 .filter(t -> t.getTransactionType() == TransactionType.TRANSFER)
-                .mapToDouble(Transaction::getAmount).sum();
+                .mapToLong(Transaction::getAmountMinorUnits).reduce(0, Money::add);
 
         Console.info("Transaction Count by Type:");
         Console.info("  Deposits: " + deposits + " transactions");
@@ -113,16 +140,22 @@ public class StatisticsService {
         Console.line();
 
         Console.info("Transaction Amount by Type:");
-        Console.info("  Total Deposits: $" + String.format("%.2f", totalDeposits));
-        Console.info("  Total Withdrawals: $" + String.format("%.2f", totalWithdrawals));
-        Console.info("  Total Transfers: $" + String.format("%.2f", totalTransfers));
+        Console.info("  Total Deposits: $" + Money.format(totalDeposits));
+        Console.info("  Total Withdrawals: $" + Money.format(totalWithdrawals));
+        Console.info("  Total Transfers: $" + Money.format(totalTransfers));
         Console.line();
 
         Console.info("System Overview:");
         Console.info("  Total Transactions: " + transactions.size());
         Console.info("  Total Transaction Volume: $"
-                + String.format("%.2f", (totalDeposits + totalWithdrawals + totalTransfers)));
-        Console.info("  Net System Change: $" + String.format("%.2f", (totalDeposits - totalWithdrawals)));
+                + Money.format(Money.add(Money.add(totalDeposits, totalWithdrawals), totalTransfers)));
+        Console.info("  Net System Change: $" + Money.format(Money.subtract(totalDeposits, totalWithdrawals)));
+        Console.line();
+
+        Console.info("Fraud Rules (in evaluation order):");
+        for (RuleStatistics rule : RuleEngine.getInstance().statistics()) {
+            Console.info("  " + rule);
+        }
         Console.line();
     }
 
@@ -132,17 +165,17 @@ public class StatisticsService {
         Console.line();
 
         long deposits = 0, withdrawals = 0, transfers = 0;
-        double totalIn = 0, totalOut = 0;
+        long totalIn = 0, totalOut = 0;
 
         for (Transaction t : transactions) {
             switch (t.getTransactionType()) {
                 case DEPOSIT:
                     deposits++;
-                    totalIn += t.getAmount();
+                    totalIn = Money.add(totalIn, t.getAmountMinorUnits());
                     break;
                 case WITHDRAWAL:
                     withdrawals++;
-                    totalOut += t.getAmount();
+                    totalOut = Money.add(totalOut, t.getAmountMinorUnits());
                     break;
                 case TRANSFER:
                     transfers++;
@@ -150,9 +183,9 @@ public class StatisticsService {
                     boolean isDest = customer.getAccounts().contains(t.getDestinationAccount());
 
                     if (isSource && !isDest) {
-                        totalOut += t.getAmount();
+                        totalOut = Money.add(totalOut, t.getAmountMinorUnits());
                     } else if (!isSource && isDest) {
-                        totalIn += t.getAmount();
+                        totalIn = Money.add(totalIn, t.getAmountMinorUnits());
                     }
                     break;
             }
@@ -166,12 +199,13 @@ public class StatisticsService {
         Console.line();
 
         Console.info("Customer Financial Summary:");
-        Console.info("  Total Money In: +$" + String.format("%.2f", totalIn));
-        Console.info("  Total Money Out: -$" + String.format("%.2f", totalOut));
-        Console.info("  Net Change: $" + String.format("%.2f", (totalIn - totalOut)));
+        Console.info("  Total Money In: +$" + Money.format(totalIn));
+        Console.info("  Total Money Out: -$" + Money.format(totalOut));
+        Console.info("  Net Change: $" + Money.format(Money.subtract(totalIn, totalOut)));
 
-        double currentBalance = customer.getAccounts().stream().mapToDouble(Account::getBalance).sum();
-        Console.info("  Current Total Balance: $" + String.format("%.2f", currentBalance));
+        long currentBalance = customer.getAccounts().stream()
+                .mapToLong(Account::getBalanceMinorUnits).reduce(0, Money::add);
+        Console.info("  Current Total Balance: $" + Money.format(currentBalance));
         Console.info("  Number of Accounts: " + customer.getAccounts().size());
         Console.line();
     }
@@ -180,11 +214,11 @@ public class StatisticsService {
         Console.info("Account Overview:");
         Console.info("  Total Accounts: " + accounts.size());
 
-        double totalBalance = accounts.stream().mapToDouble(Account::getBalance).sum();
-        Console.info("  Combined Balance: $" + String.format("%.2f", totalBalance));
+        long totalBalance = accounts.stream().mapToLong(Account::getBalanceMinorUnits).reduce(0, Money::add);
+        Console.info("  Combined Balance: $" + Money.format(totalBalance));
 
         accounts.forEach(account -> Console.info("  " + account.getAccountType() + ": $" +
-                String.format("%.2f", account.getBalance())));
+                Money.format(account.getBalanceMinorUnits())));
     }
 
     private void displayTransactionOverview(ArrayList<Transaction> allTransactions) {
@@ -216,49 +250,49 @@ public class StatisticsService {
         Console.line();
         Console.info("Financial Flow Analysis:");
 
-        double totalMoneyIn = 0, totalMoneyOut = 0;
+        long totalMoneyIn = 0, totalMoneyOut = 0;
 
         for (Transaction t : allTransactions) {
             switch (t.getTransactionType()) {
                 case DEPOSIT:
-                    totalMoneyIn += t.getAmount();
+                    totalMoneyIn = Money.add(totalMoneyIn, t.getAmountMinorUnits());
                     break;
                 case WITHDRAWAL:
-                    totalMoneyOut += t.getAmount();
+                    totalMoneyOut = Money.add(totalMoneyOut, t.getAmountMinorUnits());
                     break;
                 case TRANSFER:
                     boolean isSource = customer.getAccounts().contains(t.getSourceAccount());
                     boolean isDest = customer.getAccounts().contains(t.getDestinationAccount());
 
                     if (isSource && !isDest) {
-                        totalMoneyOut += t.getAmount();
+                        totalMoneyOut = Money.add(totalMoneyOut, t.getAmountMinorUnits());
                     } else if (!isSource && isDest) {
-                        totalMoneyIn += t.getAmount();
+                        totalMoneyIn = Money.add(totalMoneyIn, t.getAmountMinorUnits());
                     }
                     break;
             }
         }
 
-        Console.info("  Total Money Received: +$" + String.format("%.2f", totalMoneyIn));
-        Console.info("  Total Money Spent: -$" + String.format("%.2f", totalMoneyOut));
-        Console.info("  Net Financial Change: $" + String.format("%.2f", (totalMoneyIn - totalMoneyOut)));
+        Console.info("  Total Money Received: +$" + Money.format(totalMoneyIn));
+        Console.info("  Total Money Spent: -$" + Money.format(totalMoneyOut));
+        Console.info("  Net Financial Change: $" + Money.format(Money.subtract(totalMoneyIn, totalMoneyOut)));
     }
 
     private void displayActivityAnalysis(ArrayList<Transaction> allTransactions) {
         Console.line();
         Console.info("Activity Analysis:");
         if (!allTransactions.isEmpty()) {
-            double avgAmount = allTransactions.stream()
-                    .mapToDouble(Transaction::getAmount)
-                    .average()
-                    .orElse(0.0);
-            Console.info("  Average Transaction Amount: $" + String.format("%.2f", avgAmount));
-
-            double maxAmount = allTransactions.stream()
-                    .mapToDouble(Transaction::getAmount)
+            long totalAmount = allTransactions.stream()
+                    .mapToLong(Transaction::getAmountMinorUnits)
+                    .reduce(0, Money::add);
+            Console.info("  Average Transaction Amount: $"
+                    + Money.format(Math.round(totalAmount / (double) allTransactions.size())));
+
+            long maxAmount = allTransactions.stream()
+                    .mapToLong(Transaction::getAmountMinorUnits)
                     .max()
-                    .orElse(0.0);
-            Console.info("  Largest Transaction: $" + String.format("%.2f", maxAmount));
+                    .orElse(0);
+            Console.info("  Largest Transaction: $" + Money.format(maxAmount));
 
             Console.info("  First Transaction Date: " + allTransactions.get(0).getFormattedDateTime());
             Console.info("  Most Recent Transaction: " +
@@ -0,0 +1,30 @@
+package utils;
+
+import java.util.UUID;
+
+/**
+ * Source of entity ids. Implementations keep their state per thread, so
+ * concurrent callers never contend on a shared random or counter.
+ */
+public interface IdGenerator {
+
+    UUID next();
+
+    /**
+     * Picks the generator named by the bank.ids system property:
+     * "uuidv7" (default), "snowflake" or "random".
+     */
+    static IdGenerator fromSystemProperty() {
+        String mode = System.getProperty("bank.ids", "uuidv7");
+        switch (mode.trim().toLowerCase()) {
+            case "uuidv7":
+                return new TimeOrderedIdGenerator();
+            case "snowflake":
+                return new SnowflakeIdGenerator(Integer.getInteger("bank.ids.node", 0));
+            case "random":
+                return UUID::randomUUID;
+            default:
+                throw new IllegalArgumentException("Unknown id generator: " + mode);
+        }
+    }
+}
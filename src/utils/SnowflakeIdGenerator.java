@@ -0,0 +1,87 @@
+package utils;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Snowflake-style 64-bit ids: 41 bits of milliseconds since 2024-01-01 UTC,
+ * a 10-bit worker and a 12-bit sequence. The worker combines a node number,
+ * for running several processes, with a per-thread slot, so each thread
+ * counts on its own. A slot is handed on once its thread has ended, and
+ * the next thread carries on from the slot's last timestamp and sequence;
+ * a new thread is refused an id rather than given a slot that a live thread
+ * holds.
+ *
+ * The 64-bit id is carried in the high half of a UUID with a zero low half,
+ * so they sort by time like the ids themselves.
+ */
+final class SnowflakeIdGenerator implements IdGenerator {
+    private static final long EPOCH_MILLIS = 1704067200000L;
+    private static final int NODE_BITS = 3;
+    private static final int SLOT_BITS = 7;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int SLOTS = 1 << SLOT_BITS;
+
+    private final int node;
+    // Thread holding each slot, and the slot's counters, which outlive the thread; guarded by this
+    private final List<WeakReference<Thread>> owners = new ArrayList<>(Collections.nCopies(SLOTS, null));
+    private final State[] slots = new State[SLOTS];
+    private final ThreadLocal<State> state = ThreadLocal.withInitial(this::newState);
+
+    private static final class State {
+        final long worker;
+        long millis;
+        long sequence;
+
+        State(long worker) {
+            this.worker = worker;
+        }
+    }
+
+    SnowflakeIdGenerator(int node) {
+        if (node < 0 || node >= 1 << NODE_BITS) {
+            throw new IllegalArgumentException("Snowflake node must be between 0 and " + ((1 << NODE_BITS) - 1));
+        }
+        this.node = node;
+    }
+
+    @Override
+    public UUID next() {
+        return new UUID(nextLong(), 0);
+    }
+
+    long nextLong() {
+        State s = state.get();
+        long now = System.currentTimeMillis() - EPOCH_MILLIS;
+        if (now > s.millis) {
+            s.millis = now;
+            s.sequence = 0;
+        } else if (++s.sequence > SEQUENCE_MASK) {
+            // Sequence exhausted for this millisecond (or the clock stepped back), borrow the next one
+            s.millis++;
+            s.sequence = 0;
+        }
+        return (s.millis << (NODE_BITS + SLOT_BITS + SEQUENCE_BITS)) | (s.worker << SEQUENCE_BITS) | s.sequence;
+    }
+
+    // Takes the first slot never used or whose thread has ended
+    private synchronized State newState() {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            WeakReference<Thread> ref = owners.get(slot);
+            Thread owner = ref == null ? null : ref.get();
+            if (owner == null || !owner.isAlive()) {
+                owners.set(slot, new WeakReference<>(Thread.currentThread()));
+                if (slots[slot] == null) {
+                    slots[slot] = new State(((long) node << SLOT_BITS) | slot);
+                }
+                return slots[slot];
+            }
+        }
+        throw new IllegalStateException("All " + SLOTS + " snowflake id slots are held by live threads;"
+                + " generate ids from fewer threads or choose another bank.ids generator");
+    }
+}
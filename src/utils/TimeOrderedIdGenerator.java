@@ -0,0 +1,51 @@
+package utils;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * UUIDv7-style ids: a 48-bit Unix millisecond timestamp followed by a 50-bit
+ * per-thread sequence and a 24-bit thread tag. Ids from one thread strictly
+ * increase, even if the clock steps back, and ids from different threads sort
+ * by millisecond.
+ *
+ * The sequence starts at a random value each millisecond and the thread tags
+ * start at a random per-process offset, so ids stay unique across restarts.
+ */
+final class TimeOrderedIdGenerator implements IdGenerator {
+    private static final int TAG_BITS = 24;
+    private static final long TAG_MASK = (1L << TAG_BITS) - 1;
+    // Leaves 18 of the 50 sequence bits free for increments within a millisecond
+    private static final long SEQUENCE_SEED_MASK = (1L << 32) - 1;
+
+    private final AtomicInteger nextTag = new AtomicInteger(ThreadLocalRandom.current().nextInt());
+    private final ThreadLocal<State> state = ThreadLocal.withInitial(() -> new State(nextTag.getAndIncrement()));
+
+    private static final class State {
+        final long tag;
+        long millis;
+        long sequence;
+
+        State(int tag) {
+            this.tag = tag & TAG_MASK;
+        }
+    }
+
+    @Override
+    public UUID next() {
+        State s = state.get();
+        long now = System.currentTimeMillis();
+        if (now > s.millis) {
+            s.millis = now;
+            s.sequence = ThreadLocalRandom.current().nextLong() & SEQUENCE_SEED_MASK;
+        } else {
+            s.sequence++;
+        }
+        // 48 bits of time, version 7, then the top 12 sequence bits
+        long msb = (s.millis << 16) | 0x7000L | ((s.sequence >>> 38) & 0xFFFL);
+        // Variant 10, the low 38 sequence bits, then the thread tag
+        long lsb = Long.MIN_VALUE | ((s.sequence & ((1L << 38) - 1)) << TAG_BITS) | s.tag;
+        return new UUID(msb, lsb);
+    }
+}